@@ -1,237 +1,3175 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
 
-// Transaction class to store transaction history
+// Transaction class - a read-only view of one TransactionLog entry
 class Transaction {
     private String type;
-    private double amount;
+    private long amount; // cents
     private LocalDateTime timestamp;
-    private double balanceAfter;
+    private long balanceAfter; // cents
     
-    public Transaction(String type, double amount, double balanceAfter) {
+    public Transaction(String type, long amount, LocalDateTime timestamp, long balanceAfter) {
         this.type = type;
         this.amount = amount;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = timestamp;
         this.balanceAfter = balanceAfter;
     }
     
+    public String getType() {
+        return type;
+    }
+    
+    public long getAmount() {
+        return amount;
+    }
+    
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+    
+    public long getBalanceAfter() {
+        return balanceAfter;
+    }
+    
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return String.format("%-10s | $%-8.2f | %s | Balance: $%.2f", 
-            type, amount, timestamp.format(formatter), balanceAfter);
+        StringBuilder row = new StringBuilder(80);
+        StatementRenderer.appendRow(row, type, amount, timestamp.format(StatementRenderer.TIMESTAMP_FORMAT), balanceAfter);
+        return row.toString();
+    }
+}
+
+// StatementRenderer class - writes history rows straight into a reusable
+// buffer in the same fixed-width layout as Transaction.toString. The
+// formatter is shared and the formatted timestamp is cached per second, so
+// consecutive rows from the same second skip date formatting entirely.
+// Not thread-safe; use one renderer per output stream.
+class StatementRenderer {
+    static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+    
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 128);
+    private final PrintStream out;
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+    
+    public StatementRenderer(PrintStream out) {
+        this.out = out;
+    }
+    
+    public void row(byte type, long epochNanos, long amountCents, long balanceAfterCents) {
+        long second = Math.floorDiv(epochNanos, 1_000_000_000L);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = TransactionLog.toDateTime(epochNanos).format(TIMESTAMP_FORMAT);
+        }
+        appendRow(buffer, TransactionLog.typeName(type), amountCents, cachedTimestamp, balanceAfterCents);
+        buffer.append(System.lineSeparator());
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+    
+    public void flush() {
+        out.print(buffer);
+        out.flush();
+        buffer.setLength(0);
+    }
+    
+    // "%-10s | $%-8s | %s | Balance: $%s" without the formatter
+    static void appendRow(StringBuilder into, String type, long amountCents, String timestamp, long balanceAfterCents) {
+        int start = into.length();
+        into.append(type);
+        pad(into, start + 10);
+        into.append(" | $");
+        start = into.length();
+        Money.appendTo(into, amountCents);
+        pad(into, start + 8);
+        into.append(" | ").append(timestamp).append(" | Balance: $");
+        Money.appendTo(into, balanceAfterCents);
+    }
+    
+    private static void pad(StringBuilder into, int width) {
+        while (into.length() < width) {
+            into.append(' ');
+        }
+    }
+}
+
+// TransactionVisitor interface - receives history entries as primitives
+interface TransactionVisitor {
+    void visit(long index, byte type, long epochNanos, long amountCents, long balanceAfterCents);
+}
+
+// TransactionLog class - append-only columnar transaction history.
+// Each field lives in its own growable primitive array (type code, epoch
+// nanos, amount and balance in cents), so an entry costs 25 bytes of heap
+// and no per-entry objects; Transaction views are only built on iteration.
+// With an archive attached only the most recent entries stay on the heap:
+// older ones are spilled to the archive file and read back page by page.
+// Indexes are global, so entry i is the i-th posting ever made.
+class TransactionLog implements Iterable<Transaction> {
+    public static final byte DEPOSIT = 0;
+    public static final byte WITHDRAW = 1;
+    public static final byte INTEREST = 2;
+    public static final byte OVERDRAFT_FEE = 3;
+    private static final String[] TYPE_NAMES = {"DEPOSIT", "WITHDRAW", "INTEREST", "OVERDRAFT_FEE"};
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int RECENT_WINDOW = 1024;
+    
+    private byte[] types;
+    private long[] timestamps;
+    private long[] amounts;
+    private long[] balances;
+    private int size; // entries held on the heap
+    private TransactionArchive archive;
+    private long archived; // entries spilled to the archive, all older than the heap ones
+    private final StatementAggregates aggregates = new StatementAggregates();
+    
+    public TransactionLog() {
+        this.types = new byte[INITIAL_CAPACITY];
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.amounts = new long[INITIAL_CAPACITY];
+        this.balances = new long[INITIAL_CAPACITY];
+    }
+    
+    // Spill older entries to the archive from now on; the archive's existing
+    // records become the oldest part of this log
+    public void attachArchive(TransactionArchive archive) {
+        if (this.archive != null || (size > 0 && archive.size() > 0)) {
+            throw new IllegalStateException("Log already has entries outside this archive");
+        }
+        this.archive = archive;
+        this.archived = archive.size();
+        archive.read(0, archived, (index, type, epochNanos, amount, balanceAfter) ->
+            aggregates.add(type, epochNanos, amount));
+    }
+    
+    public StatementAggregates getAggregates() {
+        return aggregates;
+    }
+    
+    public TransactionArchive getArchive() {
+        return archive;
+    }
+    
+    public void append(byte type, long epochNanos, long amountCents, long balanceCents) {
+        if (archive != null && size == 2 * RECENT_WINDOW) {
+            spill(size - RECENT_WINDOW);
+        }
+        if (size == types.length) {
+            int capacity = size + (size >> 1);
+            types = Arrays.copyOf(types, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+        }
+        types[size] = type;
+        timestamps[size] = epochNanos;
+        amounts[size] = amountCents;
+        balances[size] = balanceCents;
+        size++;
+        aggregates.add(type, epochNanos, amountCents);
+    }
+    
+    // Move the oldest heap entries to the archive
+    private void spill(int count) {
+        archive.append(types, timestamps, amounts, balances, count);
+        archived += count;
+        size -= count;
+        System.arraycopy(types, count, types, 0, size);
+        System.arraycopy(timestamps, count, timestamps, 0, size);
+        System.arraycopy(amounts, count, amounts, 0, size);
+        System.arraycopy(balances, count, balances, 0, size);
+    }
+    
+    public long size() {
+        return archived + size;
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    // Index of the first entry still held on the heap
+    public long firstRecentIndex() {
+        return archived;
+    }
+    
+    public byte getType(long index) {
+        return index >= archived ? types[recent(index)] : archive.getType(index);
+    }
+    
+    public long getTimestamp(long index) {
+        return index >= archived ? timestamps[recent(index)] : archive.getTimestamp(index);
+    }
+    
+    public long getAmount(long index) {
+        return index >= archived ? amounts[recent(index)] : archive.getAmount(index);
+    }
+    
+    public long getBalanceAfter(long index) {
+        return index >= archived ? balances[recent(index)] : archive.getBalanceAfter(index);
+    }
+    
+    private int recent(long index) {
+        if (index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return (int) (index - archived);
+    }
+    
+    public Transaction get(long index) {
+        return new Transaction(typeName(getType(index)), getAmount(index),
+            toDateTime(getTimestamp(index)), getBalanceAfter(index));
+    }
+    
+    // Visit entries [from, to) in order; archived ones are read through mapped pages
+    public void forEach(long from, long to, TransactionVisitor visitor) {
+        long end = Math.min(to, size());
+        long index = Math.max(0, from);
+        if (index < archived) {
+            long archivedEnd = Math.min(end, archived);
+            archive.read(index, archivedEnd, visitor);
+            index = archivedEnd;
+        }
+        for (; index < end; index++) {
+            int i = (int) (index - archived);
+            visitor.visit(index, types[i], timestamps[i], amounts[i], balances[i]);
+        }
+    }
+    
+    // Index of the first entry at or after the given time (size() if none)
+    public long indexAtOrAfter(long epochNanos) {
+        if (size > 0 && timestamps[0] <= epochNanos) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < epochNanos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return archived + low;
+        }
+        return archived > 0 ? archive.indexAtOrAfter(epochNanos) : 0;
+    }
+    
+    @Override
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private long next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+            
+            @Override
+            public Transaction next() {
+                if (next >= size()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+    
+    public static String typeName(byte type) {
+        return TYPE_NAMES[type];
+    }
+    
+    // Effect of an entry on the balance: deposits and interest add, the rest subtract
+    public static long signedAmount(byte type, long amountCents) {
+        return type == DEPOSIT || type == INTEREST ? amountCents : -amountCents;
+    }
+    
+    public static long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+    
+    public static LocalDateTime toDateTime(long epochNanos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), ZoneId.systemDefault());
+    }
+    
+    public static long toEpochNanos(LocalDateTime dateTime) {
+        Instant instant = dateTime.atZone(ZoneId.systemDefault()).toInstant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}
+
+// TransactionQuery class - lazy, filtered cursor over an account's history.
+// The index range is narrowed by binary search on time, then entries are
+// fetched a small chunk at a time (under the account lock) and filtered on
+// primitives before any Transaction is built. Asking for the newest 20
+// entries touches one chunk, however long the history is.
+class TransactionQuery {
+    private static final int CHUNK = 64;
+    
+    private final Account account;
+    private int typeMask = -1;
+    private long fromNanos = Long.MIN_VALUE;
+    private long toNanos = Long.MAX_VALUE;
+    private long minAmount = Long.MIN_VALUE;
+    private boolean newestFirst;
+    
+    TransactionQuery(Account account) {
+        this.account = account;
+    }
+    
+    // Only entries of the given type(s); may be called more than once
+    public TransactionQuery type(byte type) {
+        typeMask = (typeMask == -1 ? 0 : typeMask) | (1 << type);
+        return this;
+    }
+    
+    // Only entries posted within [from, to)
+    public TransactionQuery between(LocalDateTime from, LocalDateTime to) {
+        this.fromNanos = TransactionLog.toEpochNanos(from);
+        this.toNanos = TransactionLog.toEpochNanos(to);
+        return this;
+    }
+    
+    public TransactionQuery minAmount(long cents) {
+        this.minAmount = cents;
+        return this;
+    }
+    
+    public TransactionQuery newestFirst() {
+        this.newestFirst = true;
+        return this;
+    }
+    
+    public Stream<Transaction> stream() {
+        return StreamSupport.stream(new Cursor(), false);
+    }
+    
+    // One page of matching entries; page 0 is the first
+    public List<Transaction> page(int page, int pageSize) {
+        return stream().skip((long) page * pageSize).limit(pageSize).collect(Collectors.toList());
+    }
+    
+    private class Cursor extends Spliterators.AbstractSpliterator<Transaction> {
+        private final byte[] types = new byte[CHUNK];
+        private final long[] timestamps = new long[CHUNK];
+        private final long[] amounts = new long[CHUNK];
+        private final long[] balances = new long[CHUNK];
+        private int buffered;
+        private int next;
+        private long low = -1;
+        private long high;
+        
+        Cursor() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super Transaction> action) {
+            while (true) {
+                while (next < buffered) {
+                    int i = next++;
+                    if ((typeMask & (1 << types[i])) != 0 && amounts[i] >= minAmount) {
+                        action.accept(new Transaction(TransactionLog.typeName(types[i]), amounts[i],
+                            TransactionLog.toDateTime(timestamps[i]), balances[i]));
+                        return true;
+                    }
+                }
+                if (!fetch()) {
+                    return false;
+                }
+            }
+        }
+        
+        // Load the next chunk in iteration order; false once the range is used up
+        private boolean fetch() {
+            synchronized (account) {
+                TransactionLog log = account.transactionHistory;
+                if (low < 0) {
+                    low = fromNanos == Long.MIN_VALUE ? 0 : log.indexAtOrAfter(fromNanos);
+                    high = toNanos == Long.MAX_VALUE ? log.size() : log.indexAtOrAfter(toNanos);
+                }
+                if (low >= high) {
+                    return false;
+                }
+                long start = newestFirst ? Math.max(low, high - CHUNK) : low;
+                long end = newestFirst ? high : Math.min(high, low + CHUNK);
+                buffered = (int) (end - start);
+                next = 0;
+                log.forEach(start, end, (index, type, epochNanos, amount, balanceAfter) -> {
+                    int i = (int) (newestFirst ? end - 1 - index : index - start);
+                    types[i] = type;
+                    timestamps[i] = epochNanos;
+                    amounts[i] = amount;
+                    balances[i] = balanceAfter;
+                });
+                if (newestFirst) {
+                    high = start;
+                } else {
+                    low = end;
+                }
+                return true;
+            }
+        }
+    }
+}
+
+// StatementAggregates class - running per-day and per-month totals of each
+// transaction type, updated as entries are appended. Range queries add up
+// whole-month buckets plus the day buckets at the ragged ends, so their cost
+// depends on the number of buckets rather than the number of transactions.
+class StatementAggregates {
+    public static final int TYPES = 4;
+    
+    private final Buckets days = new Buckets();
+    private final Buckets months = new Buckets();
+    // Local-time bounds of the day the last entry fell on, to skip date math
+    private long dayStart = Long.MAX_VALUE;
+    private long dayEnd = Long.MIN_VALUE;
+    private int currentDay;
+    private int currentMonth;
+    
+    public void add(byte type, long epochNanos, long amountCents) {
+        if (epochNanos < dayStart || epochNanos >= dayEnd) {
+            LocalDate date = TransactionLog.toDateTime(epochNanos).toLocalDate();
+            currentDay = (int) date.toEpochDay();
+            currentMonth = monthIndex(date);
+            dayStart = TransactionLog.toEpochNanos(date.atStartOfDay());
+            dayEnd = TransactionLog.toEpochNanos(date.plusDays(1).atStartOfDay());
+        }
+        days.add(currentDay, type, amountCents);
+        months.add(currentMonth, type, amountCents);
+    }
+    
+    // Total of one transaction type on the local day containing epochNanos,
+    // in O(1) when that is the day of the latest entry (the common case)
+    public long dayTotal(byte type, long epochNanos) {
+        if (epochNanos >= dayStart && epochNanos < dayEnd) {
+            return days.last(type);
+        }
+        if (epochNanos >= dayEnd) {
+            return 0;
+        }
+        LocalDate date = TransactionLog.toDateTime(epochNanos).toLocalDate();
+        return totals(date, date.plusDays(1))[type];
+    }
+    
+    // Totals per transaction type (indexed by TransactionLog type code) for [from, to)
+    public long[] totals(LocalDate from, LocalDate to) {
+        long[] totals = new long[TYPES];
+        if (!from.isBefore(to)) {
+            return totals;
+        }
+        LocalDate firstFullMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate lastMonthStart = to.withDayOfMonth(1);
+        if (firstFullMonth.isBefore(lastMonthStart)) {
+            days.sum(from.toEpochDay(), firstFullMonth.toEpochDay(), totals);
+            months.sum(monthIndex(firstFullMonth), monthIndex(lastMonthStart), totals);
+            days.sum(lastMonthStart.toEpochDay(), to.toEpochDay(), totals);
+        } else {
+            days.sum(from.toEpochDay(), to.toEpochDay(), totals);
+        }
+        return totals;
+    }
+    
+    private static int monthIndex(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+    
+    // Sorted bucket keys with TYPES running sums per bucket
+    private static class Buckets {
+        private int[] keys = new int[4];
+        private long[] sums = new long[4 * TYPES];
+        private int size;
+        
+        void add(int key, byte type, long amountCents) {
+            int slot;
+            if (size > 0 && keys[size - 1] == key) {
+                slot = size - 1;
+            } else {
+                slot = lowerBound(key);
+                if (slot == size || keys[slot] != key) {
+                    insert(slot, key);
+                }
+            }
+            sums[slot * TYPES + type] += amountCents;
+        }
+        
+        private void insert(int slot, int key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                sums = Arrays.copyOf(sums, size * 2 * TYPES);
+            }
+            // Entries normally arrive in time order, so this is almost always an append
+            System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+            System.arraycopy(sums, slot * TYPES, sums, (slot + 1) * TYPES, (size - slot) * TYPES);
+            Arrays.fill(sums, slot * TYPES, (slot + 1) * TYPES, 0);
+            keys[slot] = key;
+            size++;
+        }
+        
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        long last(byte type) {
+            return size == 0 ? 0 : sums[(size - 1) * TYPES + type];
+        }
+        
+        void sum(long fromKey, long toKey, long[] into) {
+            for (int slot = lowerBound(fromKey); slot < size && keys[slot] < toKey; slot++) {
+                for (int type = 0; type < TYPES; type++) {
+                    into[type] += sums[slot * TYPES + type];
+                }
+            }
+        }
+    }
+}
+
+// TransactionArchive class - per-account file of fixed-width history records
+// (type, epoch nanos, amount, balance after; 32 bytes each). Appends go through
+// the FileChannel; reads map the requested page read-only and decode straight
+// from the mapping, so archived history never has to be copied onto the heap.
+class TransactionArchive implements Closeable {
+    static final int RECORD_SIZE = 32;
+    private static final int PAGE_RECORDS = 4096;
+    
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer probe;
+    private long count;
+    
+    // Open an archive, discarding anything past the first `keep` records
+    // (records spilled after the last snapshot are rebuilt by journal replay)
+    public TransactionArchive(Path file, long keep) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < keep * RECORD_SIZE) {
+            throw new IOException("Transaction archive " + file + " is shorter than expected");
+        }
+        channel.truncate(keep * RECORD_SIZE);
+        this.count = keep;
+        this.writeBuffer = ByteBuffer.allocateDirect(PAGE_RECORDS * RECORD_SIZE);
+        this.probe = ByteBuffer.allocate(RECORD_SIZE);
+    }
+    
+    public synchronized long size() {
+        return count;
+    }
+    
+    public synchronized void append(byte[] types, long[] timestamps, long[] amounts, long[] balances, int length) {
+        try {
+            for (int i = 0; i < length; i++) {
+                if (!writeBuffer.hasRemaining()) {
+                    flushWrites();
+                }
+                int start = writeBuffer.position();
+                writeBuffer.put(types[i]);
+                writeBuffer.putLong(start + 8, timestamps[i]);
+                writeBuffer.putLong(start + 16, amounts[i]);
+                writeBuffer.putLong(start + 24, balances[i]);
+                writeBuffer.position(start + RECORD_SIZE);
+            }
+            flushWrites();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive transactions", e);
+        }
+    }
+    
+    private void flushWrites() throws IOException {
+        writeBuffer.flip();
+        long records = writeBuffer.remaining() / RECORD_SIZE;
+        long position = count * RECORD_SIZE;
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        count += records;
+        writeBuffer.clear();
+    }
+    
+    // Visit records [from, to) a mapped page at a time
+    public void read(long from, long to, TransactionVisitor visitor) {
+        try {
+            for (long pageStart = from; pageStart < to; pageStart += PAGE_RECORDS) {
+                int records = (int) Math.min(PAGE_RECORDS, to - pageStart);
+                MappedByteBuffer page = channel.map(FileChannel.MapMode.READ_ONLY,
+                    pageStart * RECORD_SIZE, (long) records * RECORD_SIZE);
+                for (int i = 0; i < records; i++) {
+                    int offset = i * RECORD_SIZE;
+                    visitor.visit(pageStart + i, page.get(offset), page.getLong(offset + 8),
+                        page.getLong(offset + 16), page.getLong(offset + 24));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read transaction archive", e);
+        }
+    }
+    
+    public synchronized byte getType(long index) {
+        return readRecord(index).get(0);
+    }
+    
+    public synchronized long getTimestamp(long index) {
+        return readRecord(index).getLong(8);
+    }
+    
+    public synchronized long getAmount(long index) {
+        return readRecord(index).getLong(16);
+    }
+    
+    public synchronized long getBalanceAfter(long index) {
+        return readRecord(index).getLong(24);
+    }
+    
+    // Binary search on the (append-ordered) timestamps
+    public synchronized long indexAtOrAfter(long epochNanos) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (readRecord(mid).getLong(8) < epochNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private ByteBuffer readRecord(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        try {
+            probe.clear();
+            long position = index * RECORD_SIZE;
+            while (probe.hasRemaining()) {
+                int read = channel.read(probe, position + probe.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of transaction archive");
+                }
+            }
+            return probe;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read transaction archive", e);
+        }
+    }
+    
+    public void force() throws IOException {
+        channel.force(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
+
+// Money class - fixed-point arithmetic on long cents. Everything is static
+// and works on primitives, so money math never allocates or drifts.
+final class Money {
+    public static final long CENTS_PER_DOLLAR = 100;
+    // Largest amount or balance accepted ($10 trillion). Keeping far below
+    // Long.MAX_VALUE leaves room for fees, interest and sums without overflow.
+    public static final long MAX_CENTS = 1_000_000_000_000_000L;
+    private static final long BASIS_POINTS = 10_000;
+    
+    private Money() {
+    }
+    
+    // Convert a user-entered dollar amount to cents, rounding half-even.
+    // NaN, infinities and amounts beyond MAX_CENTS are rejected.
+    public static long ofDollars(double dollars) {
+        if (!inRange(dollars)) {
+            throw new IllegalArgumentException("amount out of range " + dollars);
+        }
+        return roundHalfEven(dollars * CENTS_PER_DOLLAR);
+    }
+    
+    public static boolean inRange(double dollars) {
+        return Math.abs(dollars) <= MAX_CENTS / CENTS_PER_DOLLAR;
+    }
+    
+    // Convert a percentage such as 2.5 to basis points (250)
+    public static long percentToBasisPoints(double percent) {
+        return roundHalfEven(percent * 100);
+    }
+    
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+    
+    public static long subtract(long cents, long otherCents) {
+        return Math.subtractExact(cents, otherCents);
+    }
+    
+    // cents * basisPoints / 10000, rounded half-even (banker's rounding). The
+    // amount is split at 10000 cents so the full product is never formed; any
+    // balance up to MAX_CENTS at a rate up to 100% stays far inside a long.
+    public static long applyRate(long cents, long basisPoints) {
+        long whole = Math.floorDiv(cents, BASIS_POINTS);
+        long part = Math.floorMod(cents, BASIS_POINTS) * basisPoints;
+        long quotient = Math.addExact(Math.multiplyExact(whole, basisPoints), Math.floorDiv(part, BASIS_POINTS));
+        long remainder = Math.floorMod(part, BASIS_POINTS);
+        long twice = remainder * 2;
+        if (twice > BASIS_POINTS || (twice == BASIS_POINTS && (quotient & 1) != 0)) {
+            quotient++;
+        }
+        return quotient;
+    }
+    
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+    
+    // Render as dollars with exactly two decimals, e.g. -435.00
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(16), cents).toString();
+    }
+    
+    public static StringBuilder appendTo(StringBuilder into, long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % CENTS_PER_DOLLAR;
+        if (cents < 0) {
+            into.append('-');
+        }
+        return into.append(abs / CENTS_PER_DOLLAR).append(fraction < 10 ? ".0" : ".").append(fraction);
+    }
+    
+    // Render a rate as a percentage with two decimals, e.g. 250 -> 2.50
+    public static String formatBasisPoints(long basisPoints) {
+        return format(basisPoints);
+    }
+    
+    private static long roundHalfEven(double value) {
+        return (long) Math.rint(value);
+    }
+}
+
+// WithdrawalRules class - declarative withdrawal rules for an account product:
+// minimum balance (negative for an overdraft allowance), tiered overdraft
+// fees and a daily withdrawal cap. Rules are compiled once into a
+// WithdrawalPolicy, which is what the withdraw path evaluates.
+class WithdrawalRules {
+    private long minimumBalance;
+    private long dailyLimit = Long.MAX_VALUE;
+    private final List<long[]> feeTiers = new ArrayList<>();
+    
+    // Lowest balance a withdrawal may leave (before fees)
+    public WithdrawalRules minimumBalance(long cents) {
+        this.minimumBalance = cents;
+        return this;
+    }
+    
+    public WithdrawalRules overdraftLimit(long cents) {
+        return minimumBalance(-cents);
+    }
+    
+    // Charge `fee` when a withdrawal leaves the account overdrawn by more than `overdrawnBy`;
+    // with several tiers the highest matching one applies
+    public WithdrawalRules overdraftFee(long overdrawnBy, long fee) {
+        if (overdrawnBy < 0) {
+            throw new IllegalArgumentException("Fee threshold must not be negative: " + overdrawnBy);
+        }
+        feeTiers.add(new long[] {overdrawnBy, fee});
+        return this;
+    }
+    
+    public WithdrawalRules dailyLimit(long cents) {
+        this.dailyLimit = cents;
+        return this;
+    }
+    
+    public WithdrawalPolicy compile() {
+        List<long[]> tiers = new ArrayList<>(feeTiers);
+        tiers.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] thresholds = new long[tiers.size()];
+        long[] fees = new long[tiers.size()];
+        for (int i = 0; i < tiers.size(); i++) {
+            thresholds[i] = tiers.get(i)[0];
+            fees[i] = tiers.get(i)[1];
+        }
+        return new WithdrawalPolicy(minimumBalance, dailyLimit, thresholds, fees);
+    }
+}
+
+// WithdrawalPolicy class - compiled, immutable form of WithdrawalRules. The
+// hot path is two comparisons plus a scan of a few sorted fee thresholds
+// held in flat arrays; nothing is looked up or allocated per withdrawal.
+// The built-in products (at most one fee, charged on any overdraft) skip the
+// scan and use the single inline check the accounts hard-coded before.
+final class WithdrawalPolicy {
+    public static final int APPROVED = 0;
+    public static final int DECLINED_BALANCE = 1;
+    public static final int DECLINED_DAILY_LIMIT = 2;
+    
+    private final long minimumBalance;
+    private final long dailyLimit;
+    private final long[] feeThresholds;
+    private final long[] fees;
+    // Fee for any overdrawn balance when the tiers reduce to one flat fee, else -1
+    private final long flatFee;
+    
+    WithdrawalPolicy(long minimumBalance, long dailyLimit, long[] feeThresholds, long[] fees) {
+        this.minimumBalance = minimumBalance;
+        this.dailyLimit = dailyLimit;
+        this.feeThresholds = feeThresholds;
+        this.fees = fees;
+        if (fees.length == 0) {
+            this.flatFee = 0;
+        } else if (fees.length == 1 && feeThresholds[0] == 0 && fees[0] >= 0) {
+            this.flatFee = fees[0];
+        } else {
+            this.flatFee = -1;
+        }
+    }
+    
+    public int check(long balance, long amount, long withdrawnToday) {
+        if (balance - amount < minimumBalance) {
+            return DECLINED_BALANCE;
+        }
+        if (withdrawnToday + amount > dailyLimit) {
+            return DECLINED_DAILY_LIMIT;
+        }
+        return APPROVED;
+    }
+    
+    // Fee owed for leaving the balance at balanceAfter (0 unless overdrawn).
+    // Thresholds are sorted and non-negative, so the last tier passed wins and
+    // a balance at or above zero passes none.
+    public long feeFor(long balanceAfter) {
+        if (flatFee >= 0) {
+            return balanceAfter < 0 ? flatFee : 0;
+        }
+        long overdrawnBy = -balanceAfter;
+        long fee = 0;
+        for (int i = 0; i < feeThresholds.length; i++) {
+            fee = overdrawnBy > feeThresholds[i] ? fees[i] : fee;
+        }
+        return fee;
+    }
+    
+    public boolean hasDailyLimit() {
+        return dailyLimit != Long.MAX_VALUE;
+    }
+    
+    public long getMinimumBalance() {
+        return minimumBalance;
+    }
+    
+    public long getDailyLimit() {
+        return dailyLimit;
+    }
+    
+    public int getFeeTierCount() {
+        return fees.length;
+    }
+    
+    // Overdrawn amount above which tier i's fee applies; tiers are sorted by it
+    public long getFeeThreshold(int tier) {
+        return feeThresholds[tier];
+    }
+    
+    public long getFee(int tier) {
+        return fees[tier];
+    }
+    
+    // Snapshot form: [long minimumBalance][long dailyLimit][int tiers]([long threshold][long fee])*
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(minimumBalance);
+        out.writeLong(dailyLimit);
+        out.writeInt(fees.length);
+        for (int i = 0; i < fees.length; i++) {
+            out.writeLong(feeThresholds[i]);
+            out.writeLong(fees[i]);
+        }
+    }
+    
+    static WithdrawalPolicy readFrom(DataInput in) throws IOException {
+        long minimumBalance = in.readLong();
+        long dailyLimit = in.readLong();
+        long[] thresholds = new long[in.readInt()];
+        long[] fees = new long[thresholds.length];
+        for (int i = 0; i < fees.length; i++) {
+            thresholds[i] = in.readLong();
+            fees[i] = in.readLong();
+        }
+        return new WithdrawalPolicy(minimumBalance, dailyLimit, thresholds, fees);
+    }
+}
+
+// VelocityMonitor class - flags bursts of withdrawals on one account: more
+// than maxWithdrawals, or more than maxAmount in total, within a sliding time
+// window. Recent withdrawals sit in a primitive ring buffer with a running
+// sum, so each update is O(1) amortized and allocation-free once the buffer
+// has grown to the busiest window seen. Callers hold the account lock.
+class VelocityMonitor {
+    public static final int MAX_WITHDRAWAL_LIMIT = 1_000_000;
+    private static final int INITIAL_CAPACITY = 8;
+    
+    private final String accountNumber;
+    private final int maxWithdrawals;
+    private final long maxAmount;
+    private final long windowNanos;
+    private final BankEventSink alerts;
+    private long[] timestamps;
+    private long[] amounts;
+    private int head;
+    private int count;
+    private long windowTotal;
+    private boolean flagged;
+    
+    public VelocityMonitor(String accountNumber, int maxWithdrawals, long maxAmountCents,
+                           long windowNanos, BankEventSink alerts) {
+        checkLimits(maxWithdrawals, maxAmountCents, windowNanos);
+        this.accountNumber = accountNumber;
+        this.maxWithdrawals = maxWithdrawals;
+        this.maxAmount = maxAmountCents;
+        this.windowNanos = windowNanos;
+        this.alerts = alerts;
+        // Grows with the busiest window up to one slot past the limit, which
+        // is enough to detect a breach
+        int capacity = Math.min(INITIAL_CAPACITY, maxWithdrawals + 1);
+        this.timestamps = new long[capacity];
+        this.amounts = new long[capacity];
+    }
+    
+    // A limit of zero or less would flag every withdrawal, so it is refused
+    static void checkLimits(int maxWithdrawals, long maxAmountCents, long windowNanos) {
+        if (maxWithdrawals <= 0 || maxWithdrawals > MAX_WITHDRAWAL_LIMIT) {
+            throw new IllegalArgumentException("maxWithdrawals must be between 1 and " + MAX_WITHDRAWAL_LIMIT + ": " + maxWithdrawals);
+        }
+        if (maxAmountCents <= 0) {
+            throw new IllegalArgumentException("maxAmount must be positive: " + Money.format(maxAmountCents));
+        }
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + windowNanos + " ns");
+        }
+    }
+    
+    // Record a withdrawal; returns true if the account is over a limit
+    public boolean record(long epochNanos, long amountCents) {
+        long cutoff = epochNanos - windowNanos;
+        while (count > 0 && timestamps[head] <= cutoff) {
+            evictOldest();
+        }
+        if (count == timestamps.length) {
+            if (count > maxWithdrawals) {
+                evictOldest();
+            } else {
+                grow();
+            }
+        }
+        int tail = (head + count) % timestamps.length;
+        timestamps[tail] = epochNanos;
+        amounts[tail] = amountCents;
+        count++;
+        windowTotal += amountCents;
+        
+        boolean over = count > maxWithdrawals || windowTotal > maxAmount;
+        if (over && !flagged) {
+            alerts.emit(String.format("ALERT: withdrawal velocity exceeded on %s: %d withdrawals totalling $%s within %d s",
+                accountNumber, count, Money.format(windowTotal), windowNanos / 1_000_000_000L));
+        }
+        flagged = over;
+        return over;
+    }
+    
+    private void evictOldest() {
+        windowTotal -= amounts[head];
+        head = (head + 1) % timestamps.length;
+        count--;
+    }
+    
+    // Double the full buffer, capped at one slot past the limit, unrolling it to start at 0
+    private void grow() {
+        int capacity = (int) Math.min(2L * timestamps.length, maxWithdrawals + 1L);
+        long[] newTimestamps = new long[capacity];
+        long[] newAmounts = new long[capacity];
+        int firstRun = timestamps.length - head;
+        System.arraycopy(timestamps, head, newTimestamps, 0, firstRun);
+        System.arraycopy(timestamps, 0, newTimestamps, firstRun, head);
+        System.arraycopy(amounts, head, newAmounts, 0, firstRun);
+        System.arraycopy(amounts, 0, newAmounts, firstRun, head);
+        timestamps = newTimestamps;
+        amounts = newAmounts;
+        head = 0;
+    }
+}
+
+// BankEventSink interface - where the messages emitted by banking operations go
+interface BankEventSink {
+    void emit(String message);
+    
+    // False when messages are discarded, so callers can skip formatting them
+    default boolean isEnabled() {
+        return true;
+    }
+    
+    // Block until everything emitted so far has been written
+    default void flush() {
+    }
+}
+
+// ConsoleEventSink class - prints each message immediately (interactive use)
+class ConsoleEventSink implements BankEventSink {
+    @Override
+    public void emit(String message) {
+        System.out.println(message);
+    }
+}
+
+// NoOpEventSink class - discards everything (headless and benchmark runs)
+class NoOpEventSink implements BankEventSink {
+    @Override
+    public void emit(String message) {
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+}
+
+// AsyncEventSink class - operations only enqueue into a bounded ring buffer;
+// a background thread drains it in batches and writes each batch with a
+// single print. A full buffer blocks producers rather than dropping messages.
+class AsyncEventSink implements BankEventSink, Closeable {
+    private static final int MAX_BATCH = 256;
+    
+    private final ArrayBlockingQueue<String> ring;
+    private final PrintStream out;
+    private final Thread writer;
+    private final AtomicLong emitted = new AtomicLong();
+    private volatile long written;
+    private volatile boolean running = true;
+    
+    public AsyncEventSink(PrintStream out, int capacity) {
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.out = out;
+        this.writer = new Thread(this::drain, "bank-events");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    @Override
+    public void emit(String message) {
+        try {
+            ring.put(message);
+            emitted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void drain() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder text = new StringBuilder();
+        while (running || !ring.isEmpty()) {
+            try {
+                String first = ring.poll(10, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, MAX_BATCH - 1);
+                for (String message : batch) {
+                    text.append(message).append(System.lineSeparator());
+                }
+                out.print(text);
+                out.flush();
+                written += batch.size();
+                batch.clear();
+                text.setLength(0);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public void flush() {
+        long target = emitted.get();
+        while (written < target && writer.isAlive()) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Base Account class - every balance/history mutation holds the account's own
+// monitor, so operations on different accounts never contend. Balances are
+// held in whole cents (see Money).
+class Account {
+    protected String accountNumber;
+    protected String accountHolder;
+    protected long balance;
+    protected TransactionLog transactionHistory;
+    protected BankJournal journal; // set by Bank when the bank is persistent
+    protected BankEventSink events = CONSOLE_EVENTS;
+    protected WithdrawalPolicy withdrawalPolicy = NO_OVERDRAFT;
+    protected VelocityMonitor velocityMonitor; // null unless the bank watches withdrawal bursts
+    private static final BankEventSink CONSOLE_EVENTS = new ConsoleEventSink();
+    private static final WithdrawalPolicy NO_OVERDRAFT = new WithdrawalRules().compile();
+    
+    // Constructor
+    public Account(String accountNumber, String accountHolder, double initialBalance) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = Money.ofDollars(initialBalance);
+        this.transactionHistory = new TransactionLog();
+        
+        if (balance > 0) {
+            recordTransaction(TransactionLog.DEPOSIT, balance);
+        }
+    }
+    
+    // Append an entry to the history against the current balance
+    protected void recordTransaction(byte type, long amountCents) {
+        long now = TransactionLog.now();
+        transactionHistory.append(type, now, amountCents, balance);
+        if (journal != null) {
+            journal.logPosting(accountNumber, transactionHistory.size() - 1, type, now, amountCents);
+        }
+    }
+    
+    synchronized void attachJournal(BankJournal journal) {
+        this.journal = journal;
+    }
+    
+    public synchronized void setEventSink(BankEventSink events) {
+        this.events = events;
+    }
+    
+    public synchronized void setVelocityMonitor(VelocityMonitor velocityMonitor) {
+        this.velocityMonitor = velocityMonitor;
+    }
+    
+    // Replace this account's withdrawal rules (limits, fees, daily cap)
+    public synchronized void setWithdrawalRules(WithdrawalRules rules) {
+        this.withdrawalPolicy = rules.compile();
+        if (journal != null) {
+            journal.logPolicy(accountNumber, withdrawalPolicy);
+        }
+    }
+    
+    // Install a policy loaded from a snapshot or the journal without logging it
+    synchronized void restorePolicy(WithdrawalPolicy policy) {
+        this.withdrawalPolicy = policy;
+    }
+    
+    // Format and send an operation message to the event sink
+    protected void emit(String format, Object... args) {
+        if (events.isEnabled()) {
+            events.emit(args.length == 0 ? format : String.format(format, args));
+        }
+    }
+    
+    synchronized void attachArchive(TransactionArchive archive) {
+        transactionHistory.attachArchive(archive);
+    }
+    
+    // Number of entries ever posted; doubles as the sequence number of the next posting
+    synchronized long getPostingCount() {
+        return transactionHistory.size();
+    }
+    
+    // Re-apply a journaled posting during recovery, skipping ones the snapshot already holds
+    synchronized void replayPosting(long sequence, byte type, long epochNanos, long amountCents) {
+        if (sequence < transactionHistory.size()) {
+            return;
+        }
+        balance = Money.add(balance, TransactionLog.signedAmount(type, amountCents));
+        transactionHistory.append(type, epochNanos, amountCents, balance);
+    }
+    
+    // Replace balance and history with the state loaded from a snapshot
+    synchronized void restoreState(long balance, TransactionLog history) {
+        this.balance = balance;
+        this.transactionHistory = history;
+    }
+    
+    // Deposit method
+    public void deposit(double amount) {
+        depositCents(Money.ofDollars(amount));
+    }
+    
+    // Returns false, after explaining why, when the deposit is rejected
+    public synchronized boolean depositCents(long amount) {
+        if (amount <= 0) {
+            emit("Invalid deposit amount. Amount must be positive.");
+            return false;
+        }
+        
+        if (!canAccept(amount)) {
+            emit("Deposit declined. Balance cannot exceed $%s.", Money.format(Money.MAX_CENTS));
+            return false;
+        }
+        
+        balance = Money.add(balance, amount);
+        recordTransaction(TransactionLog.DEPOSIT, amount);
+        emit("Successfully deposited $%s. New balance: $%s", Money.format(amount), Money.format(balance));
+        return true;
+    }
+    
+    // Whether a deposit of `amount` keeps the balance within Money.MAX_CENTS
+    synchronized boolean canAccept(long amount) {
+        return amount <= Money.MAX_CENTS && balance <= Money.MAX_CENTS - amount;
+    }
+    
+    // Withdraw method
+    public boolean withdraw(double amount) {
+        return withdrawCents(Money.ofDollars(amount));
+    }
+    
+    public synchronized boolean withdrawCents(long amount) {
+        if (amount <= 0) {
+            emit("Invalid withdrawal amount. Amount must be positive.");
+            return false;
+        }
+        
+        long withdrawnToday = withdrawalPolicy.hasDailyLimit()
+            ? transactionHistory.getAggregates().dayTotal(TransactionLog.WITHDRAW, TransactionLog.now())
+            : 0;
+        int decision = withdrawalPolicy.check(balance, amount, withdrawnToday);
+        if (decision != WithdrawalPolicy.APPROVED) {
+            declined(decision, amount);
+            return false;
+        }
+        
+        // The withdrawal and its overdraft fee reach the journal as one record
+        BankJournal batch = journal;
+        if (batch != null) {
+            batch.beginBatch();
+        }
+        try {
+            balance = Money.subtract(balance, amount);
+            recordTransaction(TransactionLog.WITHDRAW, amount);
+            if (velocityMonitor != null) {
+                velocityMonitor.record(transactionHistory.getTimestamp(transactionHistory.size() - 1), amount);
+            }
+            
+            // Apply overdraft fee if the policy charges one at this balance
+            long fee = withdrawalPolicy.feeFor(balance);
+            if (fee > 0) {
+                balance = Money.subtract(balance, fee);
+                recordTransaction(TransactionLog.OVERDRAFT_FEE, fee);
+                emit("Withdrawal successful. Overdraft fee of $%s applied.", Money.format(fee));
+            }
+        } finally {
+            if (batch != null) {
+                batch.commitBatch();
+            }
+        }
+        
+        emit("Successfully withdrew $%s. New balance: $%s", Money.format(amount), Money.format(balance));
+        return true;
+    }
+    
+    // Explain why the policy refused a withdrawal
+    protected void declined(int decision, long amount) {
+        if (decision == WithdrawalPolicy.DECLINED_DAILY_LIMIT) {
+            emit("Daily withdrawal limit of $%s reached.", Money.format(withdrawalPolicy.getDailyLimit()));
+        } else {
+            emit("Insufficient funds. Current balance: $%s", Money.format(balance));
+        }
+    }
+    
+    // Get balance
+    public double getBalance() {
+        return Money.toDollars(getBalanceCents());
+    }
+    
+    public synchronized long getBalanceCents() {
+        return balance;
+    }
+    
+    // Get account details
+    public synchronized void displayAccountInfo() {
+        System.out.println("\n=== Account Information ===");
+        System.out.println("Account Number: " + accountNumber);
+        System.out.println("Account Holder: " + accountHolder);
+        System.out.println("Current Balance: $" + Money.format(balance));
+        System.out.println("Account Type: " + this.getClass().getSimpleName());
+    }
+    
+    // Display transaction history
+    public synchronized void displayTransactionHistory() {
+        displayTransactionHistory(0, transactionHistory.size());
+    }
+    
+    // Display one page of history, starting at the given entry offset
+    public synchronized void displayTransactionHistory(long offset, long limit) {
+        printTransactions(offset, offset + limit);
+    }
+    
+    // Display the entries posted within [from, to)
+    public synchronized void displayTransactionsBetween(LocalDateTime from, LocalDateTime to) {
+        printTransactions(transactionHistory.indexAtOrAfter(TransactionLog.toEpochNanos(from)),
+            transactionHistory.indexAtOrAfter(TransactionLog.toEpochNanos(to)));
+    }
+    
+    // Lazy, filterable view of this account's history
+    public TransactionQuery history() {
+        return new TransactionQuery(this);
+    }
+    
+    // Display one page of a history query; returns false when the page was empty
+    public boolean displayTransactionPage(TransactionQuery query, int page, int pageSize) {
+        List<Transaction> rows = query.page(page, pageSize);
+        printHistoryHeader();
+        if (rows.isEmpty()) {
+            System.out.println("No transactions found.");
+            return false;
+        }
+        for (Transaction transaction : rows) {
+            System.out.println(transaction);
+        }
+        return true;
+    }
+    
+    private static void printHistoryHeader() {
+        System.out.println("\n=== Transaction History ===");
+        System.out.println("Type       | Amount   | Date & Time         | Balance After");
+        System.out.println("--------------------------------------------------------");
+    }
+    
+    private void printTransactions(long from, long to) {
+        printHistoryHeader();
+        
+        if (from >= Math.min(to, transactionHistory.size())) {
+            System.out.println("No transactions found.");
+        } else {
+            StatementRenderer renderer = new StatementRenderer(System.out);
+            transactionHistory.forEach(from, to, (index, type, epochNanos, amount, balanceAfter) ->
+                renderer.row(type, epochNanos, amount, balanceAfter));
+            renderer.flush();
+        }
+    }
+    
+    // Totals per transaction type for [from, to), from the running aggregates
+    public synchronized long[] getTotals(LocalDate from, LocalDate to) {
+        return transactionHistory.getAggregates().totals(from, to);
+    }
+    
+    public void displayStatement(YearMonth month) {
+        long[] totals = getTotals(month.atDay(1), month.plusMonths(1).atDay(1));
+        System.out.println("\n=== Statement for " + month + " ===");
+        System.out.println("Account Number: " + accountNumber);
+        System.out.println("Deposits:       $" + Money.format(totals[TransactionLog.DEPOSIT]));
+        System.out.println("Withdrawals:    $" + Money.format(totals[TransactionLog.WITHDRAW]));
+        System.out.println("Interest:       $" + Money.format(totals[TransactionLog.INTEREST]));
+        System.out.println("Overdraft Fees: $" + Money.format(totals[TransactionLog.OVERDRAFT_FEE]));
+    }
+    
+    // Getters
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+    
+    public String getAccountHolder() {
+        return accountHolder;
+    }
+}
+
+// SavingsAccount class - inherits from Account
+class SavingsAccount extends Account {
+    // Rates are percent per accrual period
+    public static final double MAX_INTEREST_RATE = 100.0;
+    // Returned by accrueInterest when the interest was not posted
+    public static final long INTEREST_DECLINED = Long.MIN_VALUE;
+    
+    private long interestRate; // basis points, 250 = 2.50%
+    private static final long MIN_BALANCE = 100_00;
+    
+    public SavingsAccount(String accountNumber, String accountHolder, double initialBalance, double interestRate) {
+        super(accountNumber, accountHolder, initialBalance);
+        if (!isValidInterestRate(interestRate)) {
+            throw new IllegalArgumentException("interest rate must be between 0 and "
+                + MAX_INTEREST_RATE + "%: " + interestRate);
+        }
+        this.interestRate = Money.percentToBasisPoints(interestRate);
+        this.withdrawalPolicy = new WithdrawalRules().minimumBalance(MIN_BALANCE).compile();
+    }
+    
+    // Withdrawals must leave the minimum balance in place
+    @Override
+    protected void declined(int decision, long amount) {
+        if (decision != WithdrawalPolicy.DECLINED_BALANCE) {
+            super.declined(decision, amount);
+            return;
+        }
+        long minimumBalance = withdrawalPolicy.getMinimumBalance();
+        emit("Cannot withdraw. Minimum balance of $%s must be maintained.", Money.format(minimumBalance));
+        emit("Current balance: $%s, Attempted withdrawal: $%s", Money.format(balance), Money.format(amount));
+    }
+    
+    // NaN and negative rates are rejected along with rates above the maximum
+    public static boolean isValidInterestRate(double percent) {
+        return percent >= 0 && percent <= MAX_INTEREST_RATE;
+    }
+    
+    // Calculate and add interest, rounded half-even to the cent
+    public synchronized void addInterest() {
+        long interest = accrueInterest();
+        if (interest == INTEREST_DECLINED) {
+            return;
+        }
+        emit("Interest of $%s added at %s%% rate. New balance: $%s", 
+            Money.format(interest), Money.formatBasisPoints(interestRate), Money.format(balance));
+    }
+    
+    // Post one period of interest; returns the interest in cents, or
+    // INTEREST_DECLINED if it would take the balance past Money.MAX_CENTS
+    public synchronized long accrueInterest() {
+        long interest = Money.applyRate(balance, interestRate);
+        if (!canAccept(interest)) {
+            emit("Interest of $%s not added. Balance cannot exceed $%s.",
+                Money.format(interest), Money.format(Money.MAX_CENTS));
+            return INTEREST_DECLINED;
+        }
+        balance = Money.add(balance, interest);
+        recordTransaction(TransactionLog.INTEREST, interest);
+        return interest;
+    }
+    
+    long getInterestRateBasisPoints() {
+        return interestRate;
+    }
+    
+    @Override
+    public synchronized void displayAccountInfo() {
+        super.displayAccountInfo();
+        System.out.printf("Interest Rate: %s%%%n", Money.formatBasisPoints(interestRate));
+        System.out.printf("Minimum Balance Required: $%s%n", Money.format(withdrawalPolicy.getMinimumBalance()));
+    }
+}
+
+// CheckingAccount class - inherits from Account
+class CheckingAccount extends Account {
+    private static final long OVERDRAFT_FEE = 35_00;
+    
+    public CheckingAccount(String accountNumber, String accountHolder, double initialBalance, double overdraftLimit) {
+        super(accountNumber, accountHolder, initialBalance);
+        this.withdrawalPolicy = new WithdrawalRules()
+            .overdraftLimit(Money.ofDollars(overdraftLimit))
+            .overdraftFee(0, OVERDRAFT_FEE)
+            .compile();
+    }
+    
+    // Withdrawals may overdraw the account down to the overdraft limit
+    @Override
+    protected void declined(int decision, long amount) {
+        if (decision != WithdrawalPolicy.DECLINED_BALANCE) {
+            super.declined(decision, amount);
+            return;
+        }
+        emit("Transaction declined. Exceeds overdraft limit.");
+        emit("Current balance: $%s, Overdraft limit: $%s", Money.format(balance), Money.format(getOverdraftLimitCents()));
+    }
+    
+    synchronized long getOverdraftLimitCents() {
+        return -withdrawalPolicy.getMinimumBalance();
+    }
+    
+    @Override
+    public synchronized void displayAccountInfo() {
+        super.displayAccountInfo();
+        System.out.printf("Overdraft Limit: $%s%n", Money.format(getOverdraftLimitCents()));
+    }
+}
+
+// InterestRun class - outcome of a month-end run: the interest posted and the
+// savings accounts it could not be posted to, in account order
+final class InterestRun {
+    private final long totalInterest;
+    private final List<String> declinedAccounts;
+    
+    InterestRun(long totalInterest, List<String> declinedAccounts) {
+        this.totalInterest = totalInterest;
+        this.declinedAccounts = Collections.unmodifiableList(declinedAccounts);
+    }
+    
+    public long getTotalInterest() {
+        return totalInterest;
+    }
+    
+    public List<String> getDeclinedAccounts() {
+        return declinedAccounts;
+    }
+}
+
+// Bank class to manage multiple accounts - safe to share between threads
+class Bank {
+    private List<Account> accounts;
+    private Map<String, Account> accountsByNumber;
+    private Map<String, List<Account>> accountsByHolder;
+    private AtomicInteger nextAccountNumber;
+    private volatile BankJournal journal;
+    private volatile Path archiveDirectory;
+    private volatile BankEventSink events = new ConsoleEventSink();
+    private volatile VelocityLimits velocityLimits;
+    // Creations share it while journaling and indexing an account; a journal
+    // rotation takes it exclusively so no creation straddles a checkpoint
+    private final ReentrantReadWriteLock creationLock = new ReentrantReadWriteLock();
+    
+    public Bank() {
+        this.accounts = new ArrayList<>();
+        this.accountsByNumber = new ConcurrentHashMap<>();
+        this.accountsByHolder = new ConcurrentHashMap<>();
+        this.nextAccountNumber = new AtomicInteger(1001);
+    }
+    
+    // Journal every account and posting from now on (see BankStore)
+    synchronized void attachJournal(BankJournal journal) {
+        this.journal = journal;
+        for (Account account : getAccounts()) {
+            account.attachJournal(journal);
+        }
+    }
+    
+    // Keep only recent history on the heap, spilling older entries to
+    // one archive file per account in the given directory
+    synchronized void enableArchiving(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.archiveDirectory = directory;
+        for (Account account : getAccounts()) {
+            if (account.transactionHistory.getArchive() == null) {
+                account.attachArchive(new TransactionArchive(archivePath(account.getAccountNumber()), 0));
+            }
+        }
+    }
+    
+    private Path archivePath(String accountNumber) {
+        return archivePath(archiveDirectory, accountNumber);
+    }
+    
+    static Path archivePath(Path directory, String accountNumber) {
+        return directory.resolve(accountNumber + ".hist");
+    }
+    
+    // Route the messages of the bank and all of its accounts to the given sink
+    public synchronized void setEventSink(BankEventSink events) {
+        this.events = events;
+        for (Account account : getAccounts()) {
+            account.setEventSink(events);
+        }
+    }
+    
+    public BankEventSink getEventSink() {
+        return events;
+    }
+    
+    // Flag any account making more than maxWithdrawals, or withdrawing more than
+    // maxAmount in total, within the window; alerts go to the given sink
+    public synchronized void setVelocityLimits(int maxWithdrawals, double maxAmount, long windowSeconds, BankEventSink alerts) {
+        this.velocityLimits = new VelocityLimits(maxWithdrawals, Money.ofDollars(maxAmount),
+            TimeUnit.SECONDS.toNanos(windowSeconds), alerts);
+        for (Account account : getAccounts()) {
+            account.setVelocityMonitor(velocityLimits.monitorFor(account));
+        }
+    }
+    
+    private static class VelocityLimits {
+        private final int maxWithdrawals;
+        private final long maxAmount;
+        private final long windowNanos;
+        private final BankEventSink alerts;
+        
+        VelocityLimits(int maxWithdrawals, long maxAmount, long windowNanos, BankEventSink alerts) {
+            VelocityMonitor.checkLimits(maxWithdrawals, maxAmount, windowNanos);
+            this.maxWithdrawals = maxWithdrawals;
+            this.maxAmount = maxAmount;
+            this.windowNanos = windowNanos;
+            this.alerts = alerts;
+        }
+        
+        VelocityMonitor monitorFor(Account account) {
+            return new VelocityMonitor(account.getAccountNumber(), maxWithdrawals, maxAmount, windowNanos, alerts);
+        }
+    }
+    
+    private void emit(String format, Object... args) {
+        if (events.isEnabled()) {
+            events.emit(args.length == 0 ? format : String.format(format, args));
+        }
+    }
+    
+    // Register a new account in the list and both lookup indexes
+    private void addAccount(Account account) {
+        account.setEventSink(events);
+        VelocityLimits limits = velocityLimits;
+        if (limits != null) {
+            account.setVelocityMonitor(limits.monitorFor(account));
+        }
+        if (archiveDirectory != null) {
+            try {
+                account.attachArchive(new TransactionArchive(archivePath(account.getAccountNumber()), 0));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create transaction archive", e);
+            }
+        }
+        creationLock.readLock().lock();
+        try {
+            if (journal != null) {
+                account.attachJournal(journal);
+                journal.logCreate(account);
+            }
+            indexAccount(account);
+        } finally {
+            creationLock.readLock().unlock();
+        }
+    }
+    
+    // Start a new journal segment with no creation in flight. An account whose
+    // CREATE went to the old segment is then already in getAccounts(), so the
+    // snapshot that replaces that segment includes it.
+    void rotateJournal(Path nextFile) throws IOException {
+        creationLock.writeLock().lock();
+        try {
+            journal.rotate(nextFile);
+        } finally {
+            creationLock.writeLock().unlock();
+        }
+    }
+    
+    // Block until every change journaled so far is on disk; no-op in memory
+    public void awaitDurable() {
+        BankJournal current = journal;
+        if (current != null) {
+            current.awaitDurable(current.getRecordCount());
+        }
+    }
+    
+    // Register an account rebuilt during recovery without journaling it again
+    void restoreAccount(Account account) {
+        int number = Integer.parseInt(account.getAccountNumber().substring(3));
+        nextAccountNumber.accumulateAndGet(number + 1, Math::max);
+        indexAccount(account);
+    }
+    
+    private void indexAccount(Account account) {
+        synchronized (accounts) {
+            accounts.add(account);
+        }
+        accountsByNumber.put(account.getAccountNumber(), account);
+        accountsByHolder.computeIfAbsent(account.getAccountHolder(), holder -> new CopyOnWriteArrayList<>()).add(account);
+    }
+    
+    // Point-in-time copy of all accounts, safe to iterate while others are being created
+    public List<Account> getAccounts() {
+        synchronized (accounts) {
+            return new ArrayList<>(accounts);
+        }
+    }
+    
+    public Account createSavingsAccount(String accountHolder, double initialBalance, double interestRate) {
+        String accountNumber = "SAV" + nextAccountNumber.getAndIncrement();
+        SavingsAccount account = new SavingsAccount(accountNumber, accountHolder, initialBalance, interestRate);
+        addAccount(account);
+        emit("Savings account created successfully!");
+        return account;
+    }
+    
+    public Account createCheckingAccount(String accountHolder, double initialBalance, double overdraftLimit) {
+        String accountNumber = "CHK" + nextAccountNumber.getAndIncrement();
+        CheckingAccount account = new CheckingAccount(accountNumber, accountHolder, initialBalance, overdraftLimit);
+        addAccount(account);
+        emit("Checking account created successfully!");
+        return account;
+    }
+    
+    public Account findAccount(String accountNumber) {
+        return accountsByNumber.get(accountNumber);
+    }
+    
+    // All accounts owned by the given holder, in creation order
+    public List<Account> findAccountsByHolder(String accountHolder) {
+        List<Account> owned = accountsByHolder.get(accountHolder);
+        return owned == null ? Collections.emptyList() : Collections.unmodifiableList(owned);
+    }
+    
+    // Move money between two accounts atomically. Both monitors are taken in
+    // account-number order so opposing transfers can never deadlock, and the
+    // source account's own withdraw rules (minimum balance, overdraft) apply.
+    public boolean transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        return transferCents(fromAccountNumber, toAccountNumber, Money.ofDollars(amount));
+    }
+    
+    public boolean transferCents(String fromAccountNumber, String toAccountNumber, long amount) {
+        Account from = findAccount(fromAccountNumber);
+        Account to = findAccount(toAccountNumber);
+        
+        if (from == null || to == null) {
+            emit("Transfer failed. Account not found.");
+            return false;
+        }
+        
+        if (from == to) {
+            emit("Transfer failed. Source and destination must differ.");
+            return false;
+        }
+        
+        Account first = from.getAccountNumber().compareTo(to.getAccountNumber()) < 0 ? from : to;
+        Account second = first == from ? to : from;
+        
+        // Both legs go to the journal as one BATCH record, so recovery never
+        // sees the money leave one account without arriving in the other
+        BankJournal batch = journal;
+        synchronized (first) {
+            synchronized (second) {
+                if (batch != null) {
+                    batch.beginBatch();
+                }
+                try {
+                    if (amount > 0 && !to.canAccept(amount)) {
+                        emit("Transfer failed. Balance of %s cannot exceed $%s.", toAccountNumber, Money.format(Money.MAX_CENTS));
+                        return false;
+                    }
+                    if (!from.withdrawCents(amount)) {
+                        return false;
+                    }
+                    to.depositCents(amount);
+                } finally {
+                    if (batch != null) {
+                        batch.commitBatch();
+                    }
+                }
+            }
+        }
+        emit("Transferred $%s from %s to %s", Money.format(amount), fromAccountNumber, toAccountNumber);
+        return true;
+    }
+    
+    // Month-end run: accrue interest on every savings account and print one summary.
+    // Each account is accrued independently under its own lock, so the parallel
+    // run posts exactly the same amounts as a sequential one. An account that
+    // cannot take its interest is skipped and named in the result; the others
+    // are still credited.
+    public InterestRun accrueInterestOnAllSavings(boolean parallel) {
+        List<SavingsAccount> savings = new ArrayList<>();
+        for (Account account : getAccounts()) {
+            if (account instanceof SavingsAccount) {
+                savings.add((SavingsAccount) account);
+            }
+        }
+        
+        long start = System.nanoTime();
+        long[] posted = new long[savings.size()];
+        IntStream indices = IntStream.range(0, posted.length);
+        (parallel ? indices.parallel() : indices).forEach(i -> posted[i] = accrueOrDecline(savings.get(i)));
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        
+        long totalInterest = 0;
+        List<String> declined = new ArrayList<>();
+        for (int i = 0; i < posted.length; i++) {
+            if (posted[i] == SavingsAccount.INTEREST_DECLINED) {
+                declined.add(savings.get(i).getAccountNumber());
+            } else {
+                totalInterest += posted[i];
+            }
+        }
+        
+        emit("Interest of $%s accrued on %d savings accounts in %.1f ms (%.0f accounts/s)",
+            Money.format(totalInterest), savings.size() - declined.size(), elapsed / 1e6, savings.size() / (elapsed / 1e9));
+        if (!declined.isEmpty()) {
+            emit("Interest not posted to %d accounts: %s", declined.size(), String.join(", ", declined));
+        }
+        return new InterestRun(totalInterest, declined);
+    }
+    
+    // An arithmetic failure is raised before the account changes, so it only
+    // costs that account its interest. Journal failures still end the run.
+    private static long accrueOrDecline(SavingsAccount account) {
+        try {
+            return account.accrueInterest();
+        } catch (ArithmeticException e) {
+            return SavingsAccount.INTEREST_DECLINED;
+        }
+    }
+    
+    public void displayAllAccounts() {
+        List<Account> snapshot = getAccounts();
+        if (snapshot.isEmpty()) {
+            System.out.println("No accounts found.");
+            return;
+        }
+        
+        System.out.println("\n=== All Bank Accounts ===");
+        for (Account account : snapshot) {
+            System.out.printf("%-10s | %-20s | $%-10s | %s%n",
+                account.getAccountNumber(),
+                account.getAccountHolder(),
+                Money.format(account.getBalanceCents()),
+                account.getClass().getSimpleName()
+            );
+        }
+    }
+}
+
+// BankJournal class - append-only binary write-ahead log of account creations
+// and postings. Appends only copy into an in-memory buffer; sync() swaps the
+// buffer out, writes it through the FileChannel and forces it, so every
+// operation logged since the last sync shares one fsync (group commit).
+// Record layout: [int length][payload][int CRC32 of payload]. Postings made
+// between beginBatch and commitBatch share one BATCH record, so a transfer is
+// either replayed whole or not at all. After a failed write the journal stays
+// failed and every later call throws instead of silently dropping changes.
+class BankJournal implements Closeable {
+    static final byte CREATE_SAVINGS = 10;
+    static final byte CREATE_CHECKING = 11;
+    static final byte BATCH = 12;
+    static final byte SET_POLICY = 13;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    
+    private final Object flushLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final ThreadLocal<PostingBatch> batches = new ThreadLocal<>();
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private ByteBuffer standby;
+    private long recordCount;
+    private volatile long durableCount;
+    private volatile IOException failure;
+    
+    // Postings collected by one thread for a single BATCH record; nested
+    // batches fold into the outermost one
+    private static final class PostingBatch {
+        ByteBuffer postings = ByteBuffer.allocate(256);
+        int count;
+        int depth;
+        
+        ByteBuffer reserve(int bytes) {
+            if (postings.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(postings.capacity() * 2, postings.position() + bytes));
+                postings.flip();
+                larger.put(postings);
+                postings = larger;
+            }
+            return postings;
+        }
+    }
+    
+    public BankJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.standby = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+    
+    public void logCreate(Account account) {
+        byte kind = account instanceof SavingsAccount ? CREATE_SAVINGS : CREATE_CHECKING;
+        long parameter = account instanceof SavingsAccount
+            ? ((SavingsAccount) account).getInterestRateBasisPoints()
+            : ((CheckingAccount) account).getOverdraftLimitCents();
+        TransactionLog history = account.transactionHistory;
+        long initialDeposit = history.isEmpty() ? 0 : history.getAmount(0);
+        long createdAt = history.isEmpty() ? TransactionLog.now() : history.getTimestamp(0);
+        
+        byte[] number = account.getAccountNumber().getBytes(StandardCharsets.UTF_8);
+        byte[] holder = account.getAccountHolder().getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(1 + 8 + 2 + number.length + 2 + holder.length + 8 + 8);
+            buffer.put(kind).putLong(createdAt);
+            buffer.putShort((short) number.length).put(number);
+            buffer.putShort((short) holder.length).put(holder);
+            buffer.putLong(parameter).putLong(initialDeposit);
+            endRecord(start);
+        }
+    }
+    
+    public void logPosting(String accountNumber, long sequence, byte type, long epochNanos, long amountCents) {
+        byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + 2 + number.length + 8 + 8;
+        PostingBatch batch = batches.get();
+        if (batch != null) {
+            ByteBuffer postings = batch.reserve(4 + length).putInt(length);
+            putPosting(postings, number, sequence, type, epochNanos, amountCents);
+            batch.count++;
+            return;
+        }
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(length);
+            putPosting(buffer, number, sequence, type, epochNanos, amountCents);
+            endRecord(start);
+        }
+    }
+    
+    private static void putPosting(ByteBuffer out, byte[] number, long sequence, byte type, long epochNanos, long amountCents) {
+        out.put(type).putLong(epochNanos);
+        out.putShort((short) number.length).put(number);
+        out.putLong(sequence).putLong(amountCents);
+    }
+    
+    // A replaced withdrawal policy:
+    // [SET_POLICY][long epochNanos][account][long minimumBalance][long dailyLimit][int tiers]([long threshold][long fee])*
+    public void logPolicy(String accountNumber, WithdrawalPolicy policy) {
+        byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8);
+        int tiers = policy.getFeeTierCount();
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(1 + 8 + 2 + number.length + 8 + 8 + 4 + 16 * tiers);
+            buffer.put(SET_POLICY).putLong(TransactionLog.now());
+            buffer.putShort((short) number.length).put(number);
+            buffer.putLong(policy.getMinimumBalance()).putLong(policy.getDailyLimit()).putInt(tiers);
+            for (int i = 0; i < tiers; i++) {
+                buffer.putLong(policy.getFeeThreshold(i)).putLong(policy.getFee(i));
+            }
+            endRecord(start);
+        }
+    }
+    
+    // Collect this thread's postings until the matching commitBatch
+    public void beginBatch() {
+        PostingBatch batch = batches.get();
+        if (batch == null) {
+            batch = new PostingBatch();
+            batches.set(batch);
+        }
+        batch.depth++;
+    }
+    
+    // Close the innermost batch; the outermost one appends everything it
+    // collected as a single BATCH record: [BATCH][int count]([int length][posting])*
+    public void commitBatch() {
+        PostingBatch batch = batches.get();
+        if (--batch.depth > 0) {
+            return;
+        }
+        batches.remove();
+        if (batch.count == 0) {
+            return;
+        }
+        ByteBuffer postings = batch.postings.flip();
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(1 + 4 + postings.remaining());
+            buffer.put(BATCH).putInt(batch.count).put(postings);
+            endRecord(start);
+        }
+    }
+    
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+    
+    // Block until the first `target` records are on disk. Waiters that arrive
+    // while another thread is writing queue on the flush lock and then share
+    // the next fsync, so concurrent commits still cost one force each round.
+    public void awaitDurable(long target) {
+        while (durableCount < target) {
+            sync();
+        }
+    }
+    
+    private void checkHealthy() {
+        if (failure != null) {
+            throw new UncheckedIOException("Bank journal failed earlier; changes are no longer saved", failure);
+        }
+    }
+    
+    private int beginRecord(int payloadLength) {
+        int needed = payloadLength + 8;
+        if (buffer.remaining() < needed) {
+            // Appends never block on I/O; the buffer just grows until the next sync
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putInt(payloadLength);
+        return buffer.position();
+    }
+    
+    private void endRecord(int start) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start).limit(buffer.position());
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+        recordCount++;
+    }
+    
+    // Group commit: write and force everything logged since the previous sync
+    public void sync() {
+        synchronized (flushLock) {
+            checkHealthy();
+            ByteBuffer pending;
+            FileChannel target;
+            long covered;
+            synchronized (this) {
+                if (buffer.position() == 0) {
+                    return;
+                }
+                pending = buffer;
+                buffer = standby != null ? standby : ByteBuffer.allocate(BUFFER_SIZE);
+                standby = null;
+                target = channel;
+                covered = recordCount;
+            }
+            writeFully(target, pending);
+            durableCount = covered;
+            synchronized (this) {
+                standby = pending;
+            }
+        }
+    }
+    
+    // Flush into the current file, then direct all later records to a new one
+    public void rotate(Path nextFile) throws IOException {
+        FileChannel next = FileChannel.open(nextFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        synchronized (flushLock) {
+            checkHealthy();
+            ByteBuffer pending;
+            FileChannel previous;
+            long covered;
+            synchronized (this) {
+                pending = buffer;
+                buffer = standby != null ? standby : ByteBuffer.allocate(BUFFER_SIZE);
+                standby = null;
+                previous = channel;
+                channel = next;
+                covered = recordCount;
+            }
+            writeFully(previous, pending);
+            durableCount = covered;
+            synchronized (this) {
+                standby = pending;
+            }
+            previous.close();
+        }
+    }
+    
+    // Called under the flush lock; a failure poisons the journal for good
+    // because the records in `pending` can no longer be placed in order
+    private void writeFully(FileChannel target, ByteBuffer pending) {
+        try {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                target.write(pending);
+            }
+            target.force(false);
+            pending.clear();
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Failed to write bank journal", e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        sync();
+        synchronized (flushLock) {
+            channel.close();
+        }
+    }
+    
+    // Re-apply every intact record of a journal file to the bank. Reading stops
+    // at the first torn or corrupt record, which can only be the unsynced tail.
+    public static long replay(Path file, Bank bank) throws IOException {
+        long replayed = 0;
+        CRC32 checksum = new CRC32();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            chunk.flip();
+            while (true) {
+                if (!fill(in, chunk, 4)) {
+                    break;
+                }
+                int length = chunk.getInt(chunk.position());
+                if (length <= 0 || length > READ_BUFFER_SIZE - 8 || !fill(in, chunk, length + 8)) {
+                    break;
+                }
+                ByteBuffer payload = chunk.duplicate();
+                payload.position(chunk.position() + 4).limit(chunk.position() + 4 + length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != chunk.getInt(chunk.position() + 4 + length)) {
+                    break;
+                }
+                apply(payload, bank);
+                chunk.position(chunk.position() + length + 8);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+    
+    // Make sure at least `needed` unread bytes are buffered; false at end of file
+    private static boolean fill(FileChannel in, ByteBuffer chunk, int needed) throws IOException {
+        if (chunk.remaining() >= needed) {
+            return true;
+        }
+        chunk.compact();
+        while (chunk.position() < needed) {
+            if (in.read(chunk) < 0) {
+                chunk.flip();
+                return false;
+            }
+        }
+        chunk.flip();
+        return true;
+    }
+    
+    private static void apply(ByteBuffer payload, Bank bank) {
+        if (payload.get(payload.position()) == BATCH) {
+            payload.get();
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                int length = payload.getInt();
+                ByteBuffer posting = payload.slice(payload.position(), length);
+                apply(posting, bank);
+                payload.position(payload.position() + length);
+            }
+            return;
+        }
+        byte kind = payload.get();
+        long epochNanos = payload.getLong();
+        String accountNumber = readString(payload);
+        
+        if (kind == CREATE_SAVINGS || kind == CREATE_CHECKING) {
+            String holder = readString(payload);
+            long parameter = payload.getLong();
+            long initialDeposit = payload.getLong();
+            if (bank.findAccount(accountNumber) != null) {
+                return;
+            }
+            Account account = BankStore.newAccount(kind, accountNumber, holder, parameter);
+            if (initialDeposit > 0) {
+                account.replayPosting(0, TransactionLog.DEPOSIT, epochNanos, initialDeposit);
+            }
+            bank.restoreAccount(account);
+        } else if (kind == SET_POLICY) {
+            // Policies are replaced whole, so replaying one the snapshot already holds is harmless
+            long minimumBalance = payload.getLong();
+            long dailyLimit = payload.getLong();
+            long[] thresholds = new long[payload.getInt()];
+            long[] fees = new long[thresholds.length];
+            for (int i = 0; i < fees.length; i++) {
+                thresholds[i] = payload.getLong();
+                fees[i] = payload.getLong();
+            }
+            Account account = bank.findAccount(accountNumber);
+            if (account != null) {
+                account.restorePolicy(new WithdrawalPolicy(minimumBalance, dailyLimit, thresholds, fees));
+            }
+        } else {
+            long sequence = payload.getLong();
+            long amountCents = payload.getLong();
+            Account account = bank.findAccount(accountNumber);
+            if (account != null) {
+                account.replayPosting(sequence, kind, epochNanos, amountCents);
+            }
+        }
+    }
+    
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+// BankStore class - durable home of a Bank: the latest compact snapshot plus
+// the journal segments written since it. Recovery loads the snapshot and
+// replays the journal tail on top; checkpoints run periodically and on close.
+class BankStore implements Closeable {
+    private static final String SNAPSHOT_FILE = "bank.snapshot";
+    private static final String ARCHIVE_DIRECTORY = "archive";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int SNAPSHOT_MAGIC = 0x424E4B53; // "BNKS"
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int SNAPSHOT_VERSION_WITHOUT_POLICIES = 2;
+    private static final long GROUP_COMMIT_MILLIS = 10;
+    private static final long CHECKPOINT_MINUTES = 5;
+    
+    private final Path directory;
+    private final Bank bank;
+    private final BankJournal journal;
+    private final ScheduledExecutorService scheduler;
+    private long segment;
+    private long recordsAtCheckpoint;
+    private boolean closed;
+    private volatile boolean failureReported;
+    
+    private BankStore(Path directory, Bank bank, BankJournal journal, long segment) {
+        this.directory = directory;
+        this.bank = bank;
+        this.journal = journal;
+        this.segment = segment;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bank-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::groupCommit, GROUP_COMMIT_MILLIS, GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::periodicCheckpoint, CHECKPOINT_MINUTES, CHECKPOINT_MINUTES, TimeUnit.MINUTES);
+    }
+    
+    // Recover the bank kept in the directory (creating it if needed) and start journaling
+    public static BankStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        
+        Bank bank = new Bank();
+        Path archives = directory.resolve(ARCHIVE_DIRECTORY);
+        Files.createDirectories(archives);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            readSnapshot(snapshot, archives, bank);
+        }
+        
+        long replayed = 0;
+        List<Long> segments = listSegments(directory);
+        for (long existing : segments) {
+            replayed += BankJournal.replay(segmentPath(directory, existing), bank);
+        }
+        
+        if (Files.exists(snapshot) || replayed > 0) {
+            System.out.printf("Recovered %d accounts (%d journal records replayed) in %.1f ms%n",
+                bank.getAccounts().size(), replayed, (System.nanoTime() - start) / 1e6);
+        }
+        
+        long segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        BankJournal journal = new BankJournal(segmentPath(directory, segment));
+        bank.enableArchiving(archives);
+        bank.attachJournal(journal);
+        return new BankStore(directory, bank, journal, segment);
+    }
+    
+    public Bank getBank() {
+        return bank;
+    }
+    
+    // Write a fresh snapshot and drop the journal segments it covers. The journal
+    // is rotated first, so every record in an older segment is already reflected
+    // in the account states read below; records in the new segment may or may
+    // not be, and replay skips those by posting sequence number.
+    public synchronized void checkpoint() throws IOException {
+        long covered = segment;
+        segment++;
+        bank.rotateJournal(segmentPath(directory, segment));
+        recordsAtCheckpoint = journal.getRecordCount();
+        
+        Path target = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        writeSnapshot(temp, bank.getAccounts());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be on disk before the segments it replaces are removed,
+        // or a crash could lose both the new snapshot and the old journal
+        forceDirectory(directory);
+        
+        for (long existing : listSegments(directory)) {
+            if (existing <= covered) {
+                Files.deleteIfExists(segmentPath(directory, existing));
+            }
+        }
+    }
+    
+    // Background group commit for changes nobody is waiting on. An exception
+    // escaping a scheduled task would cancel it silently, so a write failure is
+    // reported here instead; the journal stays failed and later operations throw.
+    private void groupCommit() {
+        try {
+            journal.sync();
+        } catch (UncheckedIOException e) {
+            reportFailure(e);
+        }
+    }
+    
+    private synchronized void periodicCheckpoint() {
+        if (closed || journal.getRecordCount() == recordsAtCheckpoint) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Checkpoint failed: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            reportFailure(e);
+        }
+    }
+    
+    private void reportFailure(UncheckedIOException e) {
+        if (!failureReported) {
+            failureReported = true;
+            System.err.println("FATAL: bank journal write failed, changes are no longer being saved: "
+                + e.getCause());
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdown();
+        checkpoint();
+        journal.close();
+        for (Account account : bank.getAccounts()) {
+            TransactionArchive archive = account.transactionHistory.getArchive();
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+    
+    static Account newAccount(byte kind, String accountNumber, String holder, long parameter) {
+        if (kind == BankJournal.CREATE_SAVINGS) {
+            return new SavingsAccount(accountNumber, holder, 0.0, parameter / 100.0);
+        }
+        return new CheckingAccount(accountNumber, holder, 0.0, Money.toDollars(parameter));
+    }
+    
+    private static void writeSnapshot(Path file, List<Account> accounts) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(accounts.size());
+            for (Account account : accounts) {
+                synchronized (account) {
+                    boolean savings = account instanceof SavingsAccount;
+                    out.writeByte(savings ? BankJournal.CREATE_SAVINGS : BankJournal.CREATE_CHECKING);
+                    out.writeUTF(account.getAccountNumber());
+                    out.writeUTF(account.getAccountHolder());
+                    out.writeLong(savings
+                        ? ((SavingsAccount) account).getInterestRateBasisPoints()
+                        : ((CheckingAccount) account).getOverdraftLimitCents());
+                    out.writeLong(account.balance);
+                    account.withdrawalPolicy.writeTo(out);
+                    
+                    // Archived entries stay in the account's archive file; only the
+                    // count is recorded so recovery can cut off later spills
+                    TransactionLog history = account.transactionHistory;
+                    long archived = history.firstRecentIndex();
+                    if (history.getArchive() != null) {
+                        history.getArchive().force();
+                    }
+                    out.writeLong(archived);
+                    out.writeInt((int) (history.size() - archived));
+                    for (long i = archived; i < history.size(); i++) {
+                        out.writeByte(history.getType(i));
+                        out.writeLong(history.getTimestamp(i));
+                        out.writeLong(history.getAmount(i));
+                        out.writeLong(history.getBalanceAfter(i));
+                    }
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+    
+    private static void readSnapshot(Path file, Path archives, Bank bank) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Unrecognized bank snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_WITHOUT_POLICIES) {
+                throw new IOException("Unsupported bank snapshot version " + version + ": " + file);
+            }
+            int count = in.readInt();
+            for (int a = 0; a < count; a++) {
+                byte kind = in.readByte();
+                Account account = newAccount(kind, in.readUTF(), in.readUTF(), in.readLong());
+                long balance = in.readLong();
+                if (version == SNAPSHOT_VERSION) {
+                    account.restorePolicy(WithdrawalPolicy.readFrom(in));
+                }
+                
+                long archived = in.readLong();
+                int size = in.readInt();
+                TransactionLog history = new TransactionLog();
+                history.attachArchive(new TransactionArchive(
+                    Bank.archivePath(archives, account.getAccountNumber()), archived));
+                for (int i = 0; i < size; i++) {
+                    history.append(in.readByte(), in.readLong(), in.readLong(), in.readLong());
+                }
+                account.restoreState(balance, history);
+                bank.restoreAccount(account);
+            }
+        }
+    }
+    
+    // fsync a directory so renames and newly created files in it are durable
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+    
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+    
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
+
+// BankCommandProcessor class - executes one-line text commands against a Bank
+// and returns a one-line reply. Commands (verbs are case-insensitive):
+//   CREATE SAVINGS <balance> <rate%> <holder...>
+//   CREATE CHECKING <balance> <overdraft> <holder...>
+//   DEPOSIT <account> <amount>       WITHDRAW <account> <amount>
+//   TRANSFER <from> <to> <amount>    INTEREST <account|ALL>
+//   BALANCE <account>
+class BankCommandProcessor {
+    public static final String[] OPERATIONS = {"CREATE", "DEPOSIT", "WITHDRAW", "TRANSFER", "INTEREST", "BALANCE"};
+    
+    private final Bank bank;
+    
+    public BankCommandProcessor(Bank bank) {
+        this.bank = bank;
+    }
+    
+    // Index into OPERATIONS for the command's verb, or -1 if unknown. The verb
+    // is found the way execute finds it: after leading blanks, up to any whitespace.
+    public static int operationOf(String line) {
+        String command = line.trim();
+        int end = 0;
+        while (end < command.length() && !Character.isWhitespace(command.charAt(end))) {
+            end++;
+        }
+        String verb = command.substring(0, end);
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equalsIgnoreCase(verb)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public String execute(String line) {
+        String[] parts = line.trim().split("\\s+");
+        try {
+            switch (parts[0].toUpperCase()) {
+                case "CREATE":
+                    return create(parts);
+                case "DEPOSIT": {
+                    Account account = require(parts, 3);
+                    boolean done = account.depositCents(parseCents(parts[2]));
+                    return (done ? "OK " : "DECLINED ") + Money.format(account.getBalanceCents());
+                }
+                case "WITHDRAW": {
+                    Account account = require(parts, 3);
+                    boolean done = account.withdrawCents(parseCents(parts[2]));
+                    return (done ? "OK " : "DECLINED ") + Money.format(account.getBalanceCents());
+                }
+                case "TRANSFER":
+                    expectArgs(parts, 4);
+                    return bank.transferCents(parts[1], parts[2], parseCents(parts[3])) ? "OK" : "DECLINED";
+                case "INTEREST":
+                    expectArgs(parts, 2);
+                    if (parts[1].equalsIgnoreCase("ALL")) {
+                        InterestRun run = bank.accrueInterestOnAllSavings(true);
+                        return "OK " + Money.format(run.getTotalInterest()) + (run.getDeclinedAccounts().isEmpty()
+                            ? "" : " DECLINED " + String.join(",", run.getDeclinedAccounts()));
+                    }
+                    Account account = require(parts, 2);
+                    if (!(account instanceof SavingsAccount)) {
+                        return "ERROR not a savings account";
+                    }
+                    long interest = ((SavingsAccount) account).accrueInterest();
+                    return interest == SavingsAccount.INTEREST_DECLINED
+                        ? "DECLINED " + Money.format(account.getBalanceCents())
+                        : "OK " + Money.format(interest);
+                case "BALANCE":
+                    return "OK " + Money.format(require(parts, 2).getBalanceCents());
+                default:
+                    return "ERROR unknown command " + parts[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "ERROR " + e.getMessage();
+        }
+    }
+    
+    private String create(String[] parts) {
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("usage: CREATE SAVINGS|CHECKING <balance> <rate|overdraft> <holder>");
+        }
+        String holder = String.join(" ", Arrays.copyOfRange(parts, 4, parts.length));
+        double initialBalance = Double.parseDouble(parts[2]);
+        double parameter = Double.parseDouble(parts[3]);
+        Account account;
+        if (parts[1].equalsIgnoreCase("SAVINGS")) {
+            if (!SavingsAccount.isValidInterestRate(parameter)) {
+                throw new IllegalArgumentException("interest rate out of range " + parts[3]);
+            }
+            account = bank.createSavingsAccount(holder, initialBalance, parameter);
+        } else if (parts[1].equalsIgnoreCase("CHECKING")) {
+            account = bank.createCheckingAccount(holder, initialBalance, parameter);
+        } else {
+            throw new IllegalArgumentException("unknown account type " + parts[1]);
+        }
+        return "OK " + account.getAccountNumber();
+    }
+    
+    private Account require(String[] parts, int length) {
+        expectArgs(parts, length);
+        Account account = bank.findAccount(parts[1]);
+        if (account == null) {
+            throw new IllegalArgumentException("account not found " + parts[1]);
+        }
+        return account;
+    }
+    
+    private static void expectArgs(String[] parts, int length) {
+        if (parts.length != length) {
+            throw new IllegalArgumentException("wrong number of arguments for " + parts[0]);
+        }
+    }
+    
+    private static long parseCents(String amount) {
+        return Money.ofDollars(Double.parseDouble(amount));
     }
 }
 
-// Base Account class
-class Account {
-    protected String accountNumber;
-    protected String accountHolder;
-    protected double balance;
-    protected List<Transaction> transactionHistory;
+// LatencyRecorder class - collects raw latency samples for percentile reports
+class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
     
-    // Constructor
-    public Account(String accountNumber, String accountHolder, double initialBalance) {
-        this.accountNumber = accountNumber;
-        this.accountHolder = accountHolder;
-        this.balance = initialBalance;
-        this.transactionHistory = new ArrayList<>();
-        
-        if (initialBalance > 0) {
-            transactionHistory.add(new Transaction("DEPOSIT", initialBalance, balance));
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
         }
+        samples[count++] = nanos;
     }
     
-    // Deposit method
-    public void deposit(double amount) {
-        if (amount <= 0) {
-            System.out.println("Invalid deposit amount. Amount must be positive.");
-            return;
+    public int count() {
+        return count;
+    }
+    
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+    
+    // Nearest-rank percentile in nanoseconds; sorts the samples in place
+    public long percentile(double percent) {
+        if (count == 0) {
+            return 0;
         }
+        Arrays.sort(samples, 0, count);
+        int rank = (int) Math.ceil(percent / 100 * count);
+        return samples[Math.max(0, rank - 1)];
+    }
+}
+
+// BatchRunner class - streams a command file through a fresh in-memory Bank
+// with no prompts or per-operation output, then reports throughput,
+// per-operation latency percentiles and a checksum of the final state
+class BatchRunner {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    
+    public static void run(Path commandFile) throws IOException {
+        Bank bank = new Bank();
+        bank.setEventSink(new NoOpEventSink());
+        BankCommandProcessor processor = new BankCommandProcessor(bank);
+        LatencyRecorder[] latencies = new LatencyRecorder[BankCommandProcessor.OPERATIONS.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyRecorder();
+        }
+        
+        long executed = 0;
+        long errors = 0;
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(
+                Channels.newReader(FileChannel.open(commandFile, StandardOpenOption.READ), StandardCharsets.UTF_8),
+                READ_BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int operation = BankCommandProcessor.operationOf(line);
+                long began = System.nanoTime();
+                String reply = processor.execute(line);
+                long took = System.nanoTime() - began;
+                if (operation >= 0) {
+                    latencies[operation].record(took);
+                }
+                if (reply.startsWith("ERROR")) {
+                    errors++;
+                }
+                executed++;
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
         
-        balance += amount;
-        transactionHistory.add(new Transaction("DEPOSIT", amount, balance));
-        System.out.printf("Successfully deposited $%.2f. New balance: $%.2f%n", amount, balance);
+        System.out.printf("Executed %d commands (%d errors) in %.1f ms (%.0f ops/s)%n",
+            executed, errors, elapsed / 1e6, executed / (elapsed / 1e9));
+        System.out.println("Operation  | Count      | p50 (us)   | p99 (us)");
+        for (int i = 0; i < latencies.length; i++) {
+            if (latencies[i].count() > 0) {
+                System.out.printf("%-10s | %-10d | %-10.2f | %.2f%n", BankCommandProcessor.OPERATIONS[i],
+                    latencies[i].count(), latencies[i].percentile(50) / 1e3, latencies[i].percentile(99) / 1e3);
+            }
+        }
+        
+        CRC32 checksum = new CRC32();
+        long total = 0;
+        List<Account> accounts = bank.getAccounts();
+        ByteBuffer entry = ByteBuffer.allocate(8);
+        for (Account account : accounts) {
+            long balance = account.getBalanceCents();
+            total += balance;
+            checksum.update(account.getAccountNumber().getBytes(StandardCharsets.UTF_8));
+            entry.clear();
+            checksum.update(entry.putLong(0, balance));
+        }
+        System.out.printf("Final state: %d accounts, total balance $%s, checksum %08x%n",
+            accounts.size(), Money.format(total), checksum.getValue());
     }
+}
+
+// BankServer class - serves BankCommandProcessor commands over loopback TCP,
+// one command per line and one reply line per command. Each connection gets
+// its own thread: a virtual thread when the runtime supports them (Java 21+),
+// otherwise a pooled platform thread. A reply is only sent once the journal
+// fsync covering the command has completed, so OK means durable; concurrent
+// connections share those fsyncs through the journal's group commit.
+class BankServer implements Closeable {
+    private static final int BACKLOG = 4096;
     
-    // Withdraw method
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
-            System.out.println("Invalid withdrawal amount. Amount must be positive.");
+    private final Bank bank;
+    private final BankCommandProcessor processor;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+    
+    public BankServer(Bank bank, int port, boolean virtualThreads) throws IOException {
+        this.connections = newExecutor(virtualThreads);
+        if (connections == null) {
+            throw new IOException("Virtual threads are not supported by this Java runtime");
+        }
+        this.bank = bank;
+        this.processor = new BankCommandProcessor(bank);
+        try {
+            this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            connections.shutdown();
+            throw e;
+        }
+        this.acceptor = new Thread(this::acceptLoop, "bank-server");
+        this.acceptor.start();
+    }
+    
+    // Thread-per-task executor; null when virtual threads were asked for but are
+    // unavailable, including Java 19 and 20 without --enable-preview, where the
+    // factory exists but throws
+    static ExecutorService newExecutor(boolean virtualThreads) {
+        if (!virtualThreads) {
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    // Creates a virtual-thread executor, runs one task on it and shuts it down;
+    // finding the factory method alone does not prove it works
+    static boolean supportsVirtualThreads() {
+        ExecutorService probe = newExecutor(true);
+        if (probe == null) {
             return false;
         }
-        
-        if (amount > balance) {
-            System.out.println("Insufficient funds. Current balance: $" + balance);
+        try {
+            probe.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            probe.shutdown();
+            return probe.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
             return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            probe.shutdownNow();
         }
-        
-        balance -= amount;
-        transactionHistory.add(new Transaction("WITHDRAW", amount, balance));
-        System.out.printf("Successfully withdrew $%.2f. New balance: $%.2f%n", amount, balance);
-        return true;
     }
     
-    // Get balance
-    public double getBalance() {
-        return balance;
+    public int getPort() {
+        return serverSocket.getLocalPort();
     }
     
-    // Get account details
-    public void displayAccountInfo() {
-        System.out.println("\n=== Account Information ===");
-        System.out.println("Account Number: " + accountNumber);
-        System.out.println("Account Holder: " + accountHolder);
-        System.out.println("Current Balance: $" + balance);
-        System.out.println("Account Type: " + this.getClass().getSimpleName());
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.out.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
     }
     
-    // Display transaction history
-    public void displayTransactionHistory() {
-        System.out.println("\n=== Transaction History ===");
-        System.out.println("Type       | Amount   | Date & Time         | Balance After");
-        System.out.println("--------------------------------------------------------");
-        
-        if (transactionHistory.isEmpty()) {
-            System.out.println("No transactions found.");
-        } else {
-            for (Transaction transaction : transactionHistory) {
-                System.out.println(transaction);
+    private void serve(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            client.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null && !line.equalsIgnoreCase("QUIT")) {
+                out.println(line.isBlank() ? "ERROR empty command" : executeDurably(line));
+                out.flush();
             }
+        } catch (IOException e) {
+            // Client went away; nothing to clean up beyond the socket
         }
     }
     
-    // Getters
-    public String getAccountNumber() {
-        return accountNumber;
+    private String executeDurably(String line) {
+        try {
+            String reply = processor.execute(line);
+            bank.awaitDurable();
+            return reply;
+        } catch (UncheckedIOException e) {
+            return "ERROR bank data could not be saved: " + e.getCause();
+        }
     }
     
-    public String getAccountHolder() {
-        return accountHolder;
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
 
-// SavingsAccount class - inherits from Account
-class SavingsAccount extends Account {
-    private double interestRate;
-    private static final double MIN_BALANCE = 100.0;
+// BankLoadGenerator class - drives a loopback BankServer with many concurrent
+// clients and compares platform-thread and virtual-thread serving
+class BankLoadGenerator {
+    private static final int ACCOUNTS = 1000;
     
-    public SavingsAccount(String accountNumber, String accountHolder, double initialBalance, double interestRate) {
-        super(accountNumber, accountHolder, initialBalance);
-        this.interestRate = interestRate;
+    public static void run(int clients, int opsPerClient) throws IOException {
+        System.out.println("Mode       | Clients    | Ops        | Elapsed (ms) | Ops/s      | p50 (us)   | p99 (us)");
+        runMode(false, clients, opsPerClient);
+        if (!BankServer.supportsVirtualThreads()) {
+            System.out.println("virtual    | skipped: this runtime could not start a virtual thread (Java 21 or newer needed)");
+        } else {
+            runMode(true, clients, opsPerClient);
+        }
     }
     
-    // Override withdraw method to enforce minimum balance
-    @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
-            System.out.println("Invalid withdrawal amount. Amount must be positive.");
-            return false;
+    private static void runMode(boolean virtualThreads, int clients, int opsPerClient) throws IOException {
+        Bank bank = new Bank();
+        bank.setEventSink(new NoOpEventSink());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.createCheckingAccount("Load " + i, 1000.0, 500.0);
         }
+        List<Account> accounts = bank.getAccounts();
         
-        if ((balance - amount) < MIN_BALANCE) {
-            System.out.printf("Cannot withdraw. Minimum balance of $%.2f must be maintained.%n", MIN_BALANCE);
-            System.out.printf("Current balance: $%.2f, Attempted withdrawal: $%.2f%n", balance, amount);
-            return false;
+        LatencyRecorder latencies = new LatencyRecorder();
+        AtomicLong completed = new AtomicLong();
+        long start;
+        try (BankServer server = new BankServer(bank, 0, virtualThreads)) {
+            ExecutorService clientThreads = BankServer.newExecutor(virtualThreads);
+            start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                final long seed = c;
+                clientThreads.execute(() -> {
+                    LatencyRecorder own = runClient(server.getPort(), accounts, opsPerClient, new Random(seed));
+                    synchronized (latencies) {
+                        latencies.merge(own);
+                    }
+                    completed.addAndGet(own.count());
+                });
+            }
+            clientThreads.shutdown();
+            try {
+                clientThreads.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
+        long elapsed = Math.max(1, System.nanoTime() - start);
         
-        return super.withdraw(amount);
-    }
-    
-    // Calculate and add interest
-    public void addInterest() {
-        double interest = balance * (interestRate / 100);
-        balance += interest;
-        transactionHistory.add(new Transaction("INTEREST", interest, balance));
-        System.out.printf("Interest of $%.2f added at %.2f%% rate. New balance: $%.2f%n", 
-            interest, interestRate, balance);
+        System.out.printf("%-10s | %-10d | %-10d | %-12.1f | %-10.0f | %-10.2f | %.2f%n",
+            virtualThreads ? "virtual" : "platform", clients, completed.get(), elapsed / 1e6,
+            completed.get() / (elapsed / 1e9), latencies.percentile(50) / 1e3, latencies.percentile(99) / 1e3);
     }
     
-    @Override
-    public void displayAccountInfo() {
-        super.displayAccountInfo();
-        System.out.printf("Interest Rate: %.2f%%%n", interestRate);
-        System.out.printf("Minimum Balance Required: $%.2f%n", MIN_BALANCE);
+    private static LatencyRecorder runClient(int port, List<Account> accounts, int operations, Random random) {
+        LatencyRecorder latencies = new LatencyRecorder();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            for (int i = 0; i < operations; i++) {
+                String accountNumber = accounts.get(random.nextInt(accounts.size())).getAccountNumber();
+                int op = random.nextInt(3);
+                String command = op == 0 ? "DEPOSIT " + accountNumber + " 10.00"
+                    : op == 1 ? "WITHDRAW " + accountNumber + " 10.00"
+                    : "BALANCE " + accountNumber;
+                long began = System.nanoTime();
+                out.println(command);
+                out.flush();
+                if (in.readLine() == null) {
+                    break;
+                }
+                latencies.record(System.nanoTime() - began);
+            }
+            out.println("QUIT");
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Client failed: " + e.getMessage());
+        }
+        return latencies;
     }
 }
 
-// CheckingAccount class - inherits from Account
-class CheckingAccount extends Account {
-    private double overdraftLimit;
-    private static final double OVERDRAFT_FEE = 35.0;
+// BankBenchmark class - micro-benchmarks for the banking hot paths. The tree
+// has no build or JMH setup, so this is a small self-contained harness:
+// warm-up rounds, then timed rounds reporting the best and mean ns/op, with
+// results fed to a volatile sink so the JIT cannot drop the work.
+class BankBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int OPS_PER_ROUND = 200_000;
+    private static final int HISTORY_SIZE = 10_000;
+    private static final int[] BANK_SIZES = {1_000, 100_000, 1_000_000};
+    private static final int FOOTPRINT_ENTRIES = 1_000_000;
+    private static final int[] STATEMENT_ROWS = {1_000_000, 200_000};
     
-    public CheckingAccount(String accountNumber, String accountHolder, double initialBalance, double overdraftLimit) {
-        super(accountNumber, accountHolder, initialBalance);
-        this.overdraftLimit = overdraftLimit;
+    private static volatile long sink;
+    private static PrintStream console;
+    
+    // One benchmarked operation; the returned value is consumed
+    interface Operation {
+        long run(int iteration);
     }
     
-    // Override withdraw method to allow overdraft
-    @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
-            System.out.println("Invalid withdrawal amount. Amount must be positive.");
-            return false;
+    public static void run() {
+        console = System.out;
+        console.println("Benchmark                                    | Best (ns/op) | Mean (ns/op)");
+        
+        Account deposits = historyAccount(new Bank());
+        measure("Account.depositCents", i -> {
+            deposits.depositCents(100);
+            return deposits.getBalanceCents();
+        });
+        
+        Account withdrawals = historyAccount(new Bank());
+        measure("Account.withdrawCents", i -> withdrawals.withdrawCents(100) ? 1 : 0);
+        
+        Bank overdraftBank = quietBank();
+        Account overdrawn = overdraftBank.createCheckingAccount("Overdraft", 0.0, 1e12);
+        overdrawn.withdrawCents(1);
+        measure("CheckingAccount.withdrawCents (overdraft)", i -> overdrawn.withdrawCents(1) ? 1 : 0);
+        
+        // Spread accruals over many accounts so balances do not compound out of range
+        Bank savingsBank = quietBank();
+        SavingsAccount[] savers = new SavingsAccount[1000];
+        for (int i = 0; i < savers.length; i++) {
+            savers[i] = (SavingsAccount) savingsBank.createSavingsAccount("Saver " + i, 1000.0, 0.01);
         }
+        measure("SavingsAccount.accrueInterest", i -> savers[i % savers.length].accrueInterest());
         
-        if (amount > (balance + overdraftLimit)) {
-            System.out.printf("Transaction declined. Exceeds overdraft limit.%n");
-            System.out.printf("Current balance: $%.2f, Overdraft limit: $%.2f%n", balance, overdraftLimit);
-            return false;
+        Account unlimited = historyAccount(new Bank());
+        Account capped = historyAccount(new Bank());
+        capped.setWithdrawalRules(new WithdrawalRules().dailyLimit(Long.MAX_VALUE - 1).overdraftFee(0, 35_00));
+        measure("withdraw, default policy", i -> unlimited.withdrawCents(1) ? 1 : 0);
+        measure("withdraw, daily-cap + fee-tier policy", i -> capped.withdrawCents(1) ? 1 : 0);
+        
+        // The compiled policy against the checks CheckingAccount hard-coded
+        // before it, on the same mix of approved, overdrawn and declined cases
+        WithdrawalPolicy overdraftPolicy = new WithdrawalRules().overdraftLimit(500_00).overdraftFee(0, 35_00).compile();
+        long[] startBalances = new long[OPS_PER_ROUND];
+        Random balanceRandom = new Random(13);
+        for (int i = 0; i < startBalances.length; i++) {
+            startBalances[i] = balanceRandom.nextInt(1_600_00) - 600_00;
         }
+        measure("overdraft check, hard-coded", i -> hardCodedWithdrawal(startBalances[i], 100_00));
+        measure("overdraft check, compiled policy", i -> policyWithdrawal(overdraftPolicy, startBalances[i], 100_00));
+        WithdrawalPolicy tieredPolicy = new WithdrawalRules().overdraftLimit(500_00)
+            .overdraftFee(0, 35_00).overdraftFee(250_00, 50_00).compile();
+        measure("overdraft check, two-tier policy", i -> policyWithdrawal(tieredPolicy, startBalances[i], 100_00));
         
-        balance -= amount;
+        Bank watchedBank = new Bank();
+        watchedBank.setVelocityLimits(5, 10_000.0, 60, new NoOpEventSink());
+        Account watched = historyAccount(watchedBank);
+        measure("withdraw, velocity monitor", i -> watched.withdrawCents(1) ? 1 : 0);
         
-        // Apply overdraft fee if balance goes negative
-        if (balance < 0) {
-            balance -= OVERDRAFT_FEE;
-            transactionHistory.add(new Transaction("WITHDRAW", amount, balance + OVERDRAFT_FEE));
-            transactionHistory.add(new Transaction("OVERDRAFT_FEE", OVERDRAFT_FEE, balance));
-            System.out.printf("Withdrawal successful. Overdraft fee of $%.2f applied.%n", OVERDRAFT_FEE);
-        } else {
-            transactionHistory.add(new Transaction("WITHDRAW", amount, balance));
+        // Console sink printing into a discarding stream: the cost of formatting and printing
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Account printed = new Bank().createCheckingAccount("Printed", 0.0, 0.0);
+        measure("deposit, printing event sink", i -> {
+            printed.depositCents(1);
+            return 0;
+        });
+        System.setOut(console);
+        
+        long[] balances = new long[OPS_PER_ROUND];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = 100_000 + i;
         }
+        measure("interest: long cents (Money)", i -> Money.applyRate(balances[i], 250));
+        measure("interest: double", i -> (long) (balances[i] / 100.0 * (2.5 / 100) * 100));
+        BigDecimal rate = new BigDecimal("0.025");
+        measure("interest: BigDecimal", i -> BigDecimal.valueOf(balances[i], 2).multiply(rate)
+            .setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValue());
         
-        System.out.printf("Successfully withdrew $%.2f. New balance: $%.2f%n", amount, balance);
-        return true;
+        // A full 1M-row statement per round, and a 200k-row one to show the
+        // per-row cost does not depend on statement length
+        StatementRenderer renderer = new StatementRenderer(new PrintStream(OutputStream.nullOutputStream()));
+        long epochNanos = TransactionLog.now();
+        for (int rows : STATEMENT_ROWS) {
+            measure("StatementRenderer.row (" + rows + " rows)", rows, i -> {
+                renderer.row(TransactionLog.DEPOSIT, epochNanos + i * 1_000_000L, i, i);
+                return 0;
+            });
+            measure("Transaction.toString (" + rows + " rows)", rows, i -> new Transaction("DEPOSIT", i,
+                TransactionLog.toDateTime(epochNanos + i * 1_000_000L), i).toString().length());
+        }
+        
+        for (int size : BANK_SIZES) {
+            Bank bank = quietBank();
+            for (int i = 0; i < size; i++) {
+                bank.createCheckingAccount("Holder " + i, 0.0, 0.0);
+            }
+            String[] numbers = new String[OPS_PER_ROUND];
+            Random random = new Random(size);
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = "CHK" + (1001 + random.nextInt(size));
+            }
+            measure("Bank.findAccount (" + size + " accounts)", i -> bank.findAccount(numbers[i]).hashCode());
+            
+            // Baseline: the linear equals() scan findAccount used before the index.
+            // It is O(accounts), so fewer lookups per round keep the run short.
+            List<Account> list = bank.getAccounts();
+            measure("linear scan (" + size + " accounts)", OPS_PER_ROUND * 1_000 / size,
+                i -> linearFind(list, numbers[i]).hashCode());
+        }
+        
+        int threads = Runtime.getRuntime().availableProcessors();
+        Bank shared = quietBank();
+        Account hot = shared.createCheckingAccount("Hot", 0.0, 0.0);
+        List<Account> own = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            own.add(shared.createCheckingAccount("Thread " + t, 0.0, 0.0));
+        }
+        measureConcurrent("deposit, " + threads + " threads, own accounts", threads,
+            t -> i -> {
+                own.get(t).depositCents(1);
+                return 0;
+            });
+        measureConcurrent("deposit, " + threads + " threads, one shared account", threads,
+            t -> i -> {
+                hot.depositCents(1);
+                return 0;
+            });
+        
+        // Transfers under per-account locks against the same transfers
+        // serialized on one bank-wide lock. At least four threads, so the
+        // locks are contended on small machines too.
+        int transferThreads = Math.max(4, threads);
+        measureTransfers("transfer, " + transferThreads + " threads, disjoint pairs", transferThreads, false, null);
+        measureTransfers("  same, one global lock", transferThreads, false, new Object());
+        measureTransfers("transfer, " + transferThreads + " threads, via one hot account", transferThreads, true, null);
+        measureTransfers("  same, one global lock", transferThreads, true, new Object());
+        
+        // Heap held by one account's history, measured as used heap after GC:
+        // the columnar TransactionLog against the list of Transaction objects,
+        // each with its own LocalDateTime, that accounts kept before it
+        console.println();
+        console.println("Footprint                                    | Entries      | Bytes/entry");
+        long historyStart = TransactionLog.now();
+        reportFootprint("history: TransactionLog", FOOTPRINT_ENTRIES, () -> {
+            TransactionLog log = new TransactionLog();
+            for (int i = 0; i < FOOTPRINT_ENTRIES; i++) {
+                log.append(TransactionLog.DEPOSIT, historyStart + i * 1_000_000L, i, i);
+            }
+            return log;
+        });
+        reportFootprint("history: List<Transaction> (before)", FOOTPRINT_ENTRIES, () -> {
+            List<Transaction> list = new ArrayList<>();
+            for (int i = 0; i < FOOTPRINT_ENTRIES; i++) {
+                list.add(new Transaction("DEPOSIT", i, TransactionLog.toDateTime(historyStart + i * 1_000_000L), i));
+            }
+            return list;
+        });
     }
     
-    @Override
-    public void displayAccountInfo() {
-        super.displayAccountInfo();
-        System.out.printf("Overdraft Limit: $%.2f%n", overdraftLimit);
+    private static Bank quietBank() {
+        Bank bank = new Bank();
+        bank.setEventSink(new NoOpEventSink());
+        return bank;
     }
-}
-
-// Bank class to manage multiple accounts
-class Bank {
-    private List<Account> accounts;
-    private int nextAccountNumber;
     
-    public Bank() {
-        this.accounts = new ArrayList<>();
-        this.nextAccountNumber = 1001;
+    // Checking account with an overdraft buffer and a realistic history behind it
+    private static Account historyAccount(Bank bank) {
+        bank.setEventSink(new NoOpEventSink());
+        Account account = bank.createCheckingAccount("Benchmark", 1_000_000_000.0, 0.0);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            account.depositCents(1);
+        }
+        return account;
     }
     
-    public Account createSavingsAccount(String accountHolder, double initialBalance, double interestRate) {
-        String accountNumber = "SAV" + nextAccountNumber++;
-        SavingsAccount account = new SavingsAccount(accountNumber, accountHolder, initialBalance, interestRate);
-        accounts.add(account);
-        System.out.println("Savings account created successfully!");
-        return account;
+    // Balance after a withdrawal under the pre-policy CheckingAccount rules
+    // ($500 overdraft, $35 fee when overdrawn), or -1 when declined
+    private static long hardCodedWithdrawal(long balance, long amount) {
+        if (amount > balance + 500_00) {
+            return -1;
+        }
+        long after = balance - amount;
+        return after < 0 ? after - 35_00 : after;
     }
     
-    public Account createCheckingAccount(String accountHolder, double initialBalance, double overdraftLimit) {
-        String accountNumber = "CHK" + nextAccountNumber++;
-        CheckingAccount account = new CheckingAccount(accountNumber, accountHolder, initialBalance, overdraftLimit);
-        accounts.add(account);
-        System.out.println("Checking account created successfully!");
-        return account;
+    private static long policyWithdrawal(WithdrawalPolicy policy, long balance, long amount) {
+        if (policy.check(balance, amount, 0) != WithdrawalPolicy.APPROVED) {
+            return -1;
+        }
+        long after = balance - amount;
+        return after - policy.feeFor(after);
     }
     
-    public Account findAccount(String accountNumber) {
+    // Each thread moves one cent back and forth between its own account and
+    // either a second account of its own or a hub every thread shares. With
+    // globalLock set every transfer also holds it. Each run gets a fresh bank,
+    // so none inherits another's history.
+    private static void measureTransfers(String name, int threads, boolean viaHub, Object globalLock) {
+        Bank bank = quietBank();
+        String hub = bank.createCheckingAccount("Hub", 1_000_000.0, 0.0).getAccountNumber();
+        String[] own = new String[threads];
+        String[] other = new String[threads];
+        for (int t = 0; t < threads; t++) {
+            own[t] = bank.createCheckingAccount("Own " + t, 1_000.0, 0.0).getAccountNumber();
+            other[t] = viaHub ? hub : bank.createCheckingAccount("Other " + t, 1_000.0, 0.0).getAccountNumber();
+        }
+        measureConcurrent(name, threads, t -> i -> {
+            if (globalLock == null) {
+                return alternatingTransfer(bank, own[t], other[t], i);
+            }
+            synchronized (globalLock) {
+                return alternatingTransfer(bank, own[t], other[t], i);
+            }
+        });
+    }
+    
+    // One cent one way on even iterations and back on odd ones
+    private static long alternatingTransfer(Bank bank, String one, String other, int iteration) {
+        boolean forward = (iteration & 1) == 0;
+        return bank.transferCents(forward ? one : other, forward ? other : one, 1) ? 1 : 0;
+    }
+    
+    private static Account linearFind(List<Account> accounts, String accountNumber) {
         for (Account account : accounts) {
             if (account.getAccountNumber().equals(accountNumber)) {
                 return account;
@@ -240,74 +3178,295 @@ class Bank {
         return null;
     }
     
-    public void displayAllAccounts() {
-        if (accounts.isEmpty()) {
-            System.out.println("No accounts found.");
-            return;
+    private static void measure(String name, Operation operation) {
+        measure(name, OPS_PER_ROUND, operation);
+    }
+    
+    private static void measure(String name, int operations, Operation operation) {
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            long result = 0;
+            for (int i = 0; i < operations; i++) {
+                result += operation.run(i);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = result;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
         }
-        
-        System.out.println("\n=== All Bank Accounts ===");
-        for (Account account : accounts) {
-            System.out.printf("%-10s | %-20s | $%-10.2f | %s%n",
-                account.getAccountNumber(),
-                account.getAccountHolder(),
-                account.getBalance(),
-                account.getClass().getSimpleName()
-            );
+        report(name, best / (double) operations, total / (double) MEASURED_ROUNDS / operations);
+    }
+    
+    // Same as measure, with each thread running OPS_PER_ROUND operations per round
+    private static void measureConcurrent(String name, int threads, IntFunction<Operation> perThread) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        try {
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                List<Callable<Long>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    Operation operation = perThread.apply(t);
+                    tasks.add(() -> {
+                        long result = 0;
+                        for (int i = 0; i < OPS_PER_ROUND; i++) {
+                            result += operation.run(i);
+                        }
+                        return result;
+                    });
+                }
+                long start = System.nanoTime();
+                for (Future<Long> result : pool.invokeAll(tasks)) {
+                    sink = result.get();
+                }
+                long elapsed = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    best = Math.min(best, elapsed);
+                    total += elapsed;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        // Reported per operation across all threads, i.e. inverse throughput
+        long operations = (long) threads * OPS_PER_ROUND;
+        report(name, best / (double) operations, total / (double) MEASURED_ROUNDS / operations);
+    }
+    
+    // Used heap after GC with the built structure alive, less the same before it
+    private static void reportFootprint(String name, int entries, Supplier<Object> build) {
+        long before = usedHeapAfterGc();
+        Object built = build.get();
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(built);
+        console.printf("%-44s | %-12d | %.1f%n", name, entries, (after - before) / (double) entries);
+    }
+    
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
         }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    private static void report(String name, double best, double mean) {
+        console.printf("%-44s | %-12.1f | %.1f%n", name, best, mean);
     }
 }
 
 // Main class with interactive menu
 public class BankAccountSimulation {
-    private static Bank bank = new Bank();
+    private static final String DEFAULT_DATA_DIRECTORY = "bank-data";
+    private static Bank bank;
+    private static BankStore store;
     private static Scanner scanner = new Scanner(System.in);
     
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--stress")) {
+            runStressTest();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--bench")) {
+            BankBenchmark.run();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--batch")) {
+            BatchRunner.run(Paths.get(args[1]));
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--loadtest")) {
+            BankLoadGenerator.run(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        // Accounts and history are kept in a data directory and recovered on startup
+        Path dataDirectory = dataDirectory(args);
+        if (args.length > 1 && args[0].equals("--serve")) {
+            serve(Integer.parseInt(args[1]), dataDirectory);
+            return;
+        }
+        
         System.out.println("=== Welcome to Bank Account Simulation ===");
         
+        store = BankStore.open(dataDirectory);
+        bank = store.getBank();
+        Runtime.getRuntime().addShutdownHook(new Thread(BankAccountSimulation::closeStore));
+        
         // Create some sample accounts for demonstration
-        createSampleAccounts();
+        if (bank.getAccounts().isEmpty()) {
+            createSampleAccounts();
+        }
         
         boolean running = true;
         while (running) {
             displayMenu();
             int choice = getIntInput();
             
-            switch (choice) {
-                case 1:
-                    createAccount();
-                    break;
-                case 2:
-                    depositMoney();
-                    break;
-                case 3:
-                    withdrawMoney();
-                    break;
-                case 4:
-                    checkBalance();
-                    break;
-                case 5:
-                    viewTransactionHistory();
-                    break;
-                case 6:
-                    viewAccountDetails();
-                    break;
-                case 7:
-                    addInterestToSavings();
-                    break;
-                case 8:
-                    bank.displayAllAccounts();
-                    break;
-                case 9:
-                    running = false;
-                    System.out.println("Thank you for using Bank Account Simulation!");
-                    break;
-                default:
-                    System.out.println("Invalid choice. Please try again.");
+            try {
+                switch (choice) {
+                    case 1:
+                        createAccount();
+                        break;
+                    case 2:
+                        depositMoney();
+                        break;
+                    case 3:
+                        withdrawMoney();
+                        break;
+                    case 4:
+                        checkBalance();
+                        break;
+                    case 5:
+                        viewTransactionHistory();
+                        break;
+                    case 6:
+                        viewAccountDetails();
+                        break;
+                    case 7:
+                        addInterestToSavings();
+                        break;
+                    case 8:
+                        bank.displayAllAccounts();
+                        break;
+                    case 9:
+                        transferMoney();
+                        break;
+                    case 10:
+                        bank.accrueInterestOnAllSavings(true);
+                        break;
+                    case 11:
+                        viewMonthlyStatement();
+                        break;
+                    case 12:
+                        running = false;
+                        System.out.println("Thank you for using Bank Account Simulation!");
+                        break;
+                    default:
+                        System.out.println("Invalid choice. Please try again.");
+                }
+                bank.awaitDurable();
+            } catch (UncheckedIOException e) {
+                // The journal failed; stop rather than keep changes that will not be saved
+                System.out.println("Bank data can no longer be saved: " + e.getCause());
+                running = false;
             }
         }
         scanner.close();
+        closeStore();
+    }
+    
+    // The directory given with --data anywhere on the command line, or the default
+    private static Path dataDirectory(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--data")) {
+                return Paths.get(args[i + 1]);
+            }
+        }
+        return Paths.get(DEFAULT_DATA_DIRECTORY);
+    }
+    
+    // Serve the persistent bank over loopback until the process is stopped
+    private static void serve(int port, Path dataDirectory) throws IOException {
+        store = BankStore.open(dataDirectory);
+        bank = store.getBank();
+        AsyncEventSink events = new AsyncEventSink(System.out, 1 << 16);
+        bank.setEventSink(events);
+        
+        boolean virtualThreads = BankServer.supportsVirtualThreads();
+        BankServer server = new BankServer(bank, port, virtualThreads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.out.println("Failed to stop server: " + e.getMessage());
+            }
+            events.close();
+            closeStore();
+        }));
+        System.out.printf("Bank server listening on port %d (%s threads)%n",
+            server.getPort(), virtualThreads ? "virtual" : "platform");
+    }
+    
+    private static void closeStore() {
+        try {
+            store.close();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Failed to save bank data: " + e.getMessage());
+        }
+    }
+    
+    // Hammer a shared Bank from many threads and verify no money was created or lost
+    private static void runStressTest() {
+        final int threads = Runtime.getRuntime().availableProcessors() * 2;
+        final int accountCount = 64;
+        final int opsPerThread = 50_000;
+        
+        Bank stressBank = new Bank();
+        stressBank.setEventSink(new NoOpEventSink());
+        for (int i = 0; i < accountCount; i++) {
+            stressBank.createCheckingAccount("Stress " + i, 1000.0, 0.0);
+        }
+        List<Account> targets = stressBank.getAccounts();
+        AtomicLong netCents = new AtomicLong(accountCount * 100_000L);
+        
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            pool.execute(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < opsPerThread; i++) {
+                    Account account = targets.get(random.nextInt(targets.size()));
+                    long cents = 1 + random.nextInt(5000);
+                    int op = random.nextInt(4);
+                    if (op == 0) {
+                        if (account.depositCents(cents)) {
+                            netCents.addAndGet(cents);
+                        }
+                    } else if (op == 1) {
+                        if (account.withdrawCents(cents)) {
+                            netCents.addAndGet(-cents);
+                        }
+                    } else {
+                        // Half of all transfers touch the first account to create a hot spot
+                        Account other = op == 2 ? targets.get(0) : targets.get(random.nextInt(targets.size()));
+                        boolean outgoing = random.nextBoolean();
+                        stressBank.transferCents(
+                            (outgoing ? account : other).getAccountNumber(),
+                            (outgoing ? other : account).getAccountNumber(),
+                            cents);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        long total = 0;
+        for (Account account : targets) {
+            total += account.getBalanceCents();
+        }
+        long expected = netCents.get();
+        boolean consistent = total == expected;
+        
+        System.out.printf("Stress test: %d threads x %d ops on %d accounts in %.1f ms (%.0f ops/s)%n",
+            threads, opsPerThread, accountCount, elapsed / 1e6,
+            (double) threads * opsPerThread / (elapsed / 1e9));
+        System.out.printf("Expected total: $%s, actual total: $%s -> %s%n",
+            Money.format(expected), Money.format(total), consistent ? "CONSISTENT" : "INCONSISTENT");
     }
     
     private static void createSampleAccounts() {
@@ -326,7 +3485,10 @@ public class BankAccountSimulation {
         System.out.println("6. View Account Details");
         System.out.println("7. Add Interest (Savings Account)");
         System.out.println("8. View All Accounts");
-        System.out.println("9. Exit");
+        System.out.println("9. Transfer Money");
+        System.out.println("10. Accrue Interest (All Savings Accounts)");
+        System.out.println("11. Monthly Statement");
+        System.out.println("12. Exit");
         System.out.print("Choose an option: ");
     }
     
@@ -345,6 +3507,10 @@ public class BankAccountSimulation {
         if (type == 1) {
             System.out.print("Enter interest rate (%): ");
             double rate = getDoubleInput();
+            while (!SavingsAccount.isValidInterestRate(rate)) {
+                System.out.printf("Invalid input. Please enter a rate from 0 to %s: ", SavingsAccount.MAX_INTEREST_RATE);
+                rate = getDoubleInput();
+            }
             bank.createSavingsAccount(name, balance, rate);
         } else if (type == 2) {
             System.out.print("Enter overdraft limit: $");
@@ -373,17 +3539,55 @@ public class BankAccountSimulation {
         }
     }
     
+    private static void transferMoney() {
+        bank.displayAllAccounts();
+        System.out.print("Enter source account number: ");
+        String fromAccountNumber = scanner.nextLine();
+        System.out.print("Enter destination account number: ");
+        String toAccountNumber = scanner.nextLine();
+        System.out.print("Enter transfer amount: $");
+        double amount = getDoubleInput();
+        bank.transfer(fromAccountNumber, toAccountNumber, amount);
+    }
+    
     private static void checkBalance() {
         Account account = selectAccount();
         if (account != null) {
-            System.out.printf("Current balance: $%.2f%n", account.getBalance());
+            System.out.printf("Current balance: $%s%n", Money.format(account.getBalanceCents()));
         }
     }
     
     private static void viewTransactionHistory() {
         Account account = selectAccount();
-        if (account != null) {
+        if (account == null) {
+            return;
+        }
+        System.out.print("Transactions per page, newest first (0 for full history): ");
+        int pageSize = getIntInput();
+        if (pageSize <= 0) {
             account.displayTransactionHistory();
+            return;
+        }
+        
+        TransactionQuery query = account.history().newestFirst();
+        for (int page = 0; account.displayTransactionPage(query, page, pageSize); page++) {
+            System.out.print("Show older transactions? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                break;
+            }
+        }
+    }
+    
+    private static void viewMonthlyStatement() {
+        Account account = selectAccount();
+        if (account != null) {
+            System.out.print("Enter month (yyyy-MM, blank for current): ");
+            String input = scanner.nextLine().trim();
+            try {
+                account.displayStatement(input.isEmpty() ? YearMonth.now() : YearMonth.parse(input));
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid month.");
+            }
         }
     }
     
@@ -430,10 +3634,13 @@ public class BankAccountSimulation {
         while (true) {
             try {
                 double value = Double.parseDouble(scanner.nextLine());
-                return value;
+                if (Money.inRange(value)) {
+                    return value;
+                }
             } catch (NumberFormatException e) {
-                System.out.print("Invalid input. Please enter a valid amount: ");
+                // not a number; prompt again below
             }
+            System.out.print("Invalid input. Please enter a valid amount: ");
         }
     }
 }
\ No newline at end of file
@@ -1,10 +1,51 @@
 // LibraryManagement.java - Complete Library Management System in Single File
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 // Book class
 class Book {
@@ -60,7 +101,7 @@ class User {
     private String name;
     private String email;
     private String phone;
-    private List<Integer> issuedBooks;
+    private IntSet issuedBooks;
 
     // Constructor
     public User(int userId, String name, String email, String phone) {
@@ -68,7 +109,7 @@ class User {
         this.name = name;
         this.email = email;
         this.phone = phone;
-        this.issuedBooks = new ArrayList<>();
+        this.issuedBooks = new IntSet();
     }
 
     // Getters and Setters
@@ -76,239 +117,2850 @@ class User {
     public String getName() { return name; }
     public String getEmail() { return email; }
     public String getPhone() { return phone; }
-    public List<Integer> getIssuedBooks() { return issuedBooks; }
+    public int getIssuedBookCount() { return issuedBooks.size(); }
+    public boolean hasIssuedBook(int bookId) { return issuedBooks.contains(bookId); }
+    public void forEachIssuedBook(IntConsumer action) { issuedBooks.forEach(action); }
+
+    // Boxed copy of the issued book IDs; prefer forEachIssuedBook for iteration
+    public List<Integer> getIssuedBooks() {
+        List<Integer> copy = new ArrayList<>(issuedBooks.size());
+        issuedBooks.forEach(copy::add);
+        return copy;
+    }
 
     public void setName(String name) { this.name = name; }
     public void setEmail(String email) { this.email = email; }
     public void setPhone(String phone) { this.phone = phone; }
 
-    public void addIssuedBook(int bookId) {
-        issuedBooks.add(bookId);
+    public void addIssuedBook(int bookId) {
+        issuedBooks.add(bookId);
+    }
+
+    public void removeIssuedBook(int bookId) {
+        issuedBooks.remove(bookId);
+    }
+
+    @Override
+    public String toString() {
+        return "User{" +
+                "ID=" + userId +
+                ", Name='" + name + '\'' +
+                ", Email='" + email + '\'' +
+                ", Phone='" + phone + '\'' +
+                ", Issued Books=" + issuedBooks.size() +
+                '}';
+    }
+}
+
+// IntSet class - set of ints stored densely for allocation-free iteration.
+// Small sets are searched linearly; past INDEX_THRESHOLD elements a position
+// index makes contains and remove O(1), and removal swaps in the last element.
+class IntSet {
+    private static final int INDEX_THRESHOLD = 8;
+    private static final int[] EMPTY = new int[0];
+
+    private int[] elements = EMPTY;
+    private int size;
+    private IntIntMap positions;
+
+    public boolean add(int value) {
+        if (indexOf(value) >= 0) {
+            return false;
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(4, size * 2));
+        }
+        elements[size] = value;
+        if (positions != null) {
+            positions.put(value, size);
+        }
+        size++;
+        if (positions == null && size > INDEX_THRESHOLD) {
+            positions = new IntIntMap(size * 2);
+            for (int i = 0; i < size; i++) {
+                positions.put(elements[i], i);
+            }
+        }
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        int last = elements[--size];
+        elements[index] = last;
+        if (positions != null) {
+            positions.remove(value, -1);
+            if (index != size) {
+                positions.put(last, index);
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    private int indexOf(int value) {
+        if (positions != null) {
+            return positions.get(value, -1);
+        }
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(elements[i]);
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
+
+// LibraryInterface (Interface for abstraction)
+interface LibraryInterface {
+    boolean addBook(Book book);
+    boolean addUser(User user);
+    boolean issueBook(int bookId, int userId);
+    boolean returnBook(int bookId, int userId);
+    List<Book> searchBooksByTitle(String title);
+    List<Book> searchBooksByAuthor(String author);
+    void displayAllBooks();
+    void displayAllUsers();
+}
+
+// IntIntMap class - open-addressing int -> int hash map with linear probing,
+// so lookups by numeric ID need no boxing and no per-entry objects
+class IntIntMap {
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    // FREE marks empty slots, so a key equal to FREE is kept on the side
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int get(int key, int missing) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : missing;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int found = keys[i];
+            if (found == key) {
+                return values[i];
+            }
+            if (found == FREE) {
+                return missing;
+            }
+        }
+    }
+
+    // Inserts unless the key is already mapped; returns true if inserted
+    public boolean putIfAbsent(int key, int value) {
+        if (key == FREE) {
+            if (hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            size++;
+            return true;
+        }
+        int i = slot(key);
+        for (; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return false;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    // Maps key to value, replacing any existing mapping
+    public void put(int key, int value) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return;
+        }
+        int i = slot(key);
+        for (; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    // Removes the mapping and returns its value, or missing if there was none.
+    // Later entries of the probe run shift back, so no tombstones are left.
+    public int remove(int key, int missing) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                return missing;
+            }
+            hasFreeKey = false;
+            size--;
+            return freeKeyValue;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return missing;
+            }
+            i = (i + 1) & mask;
+        }
+        int value = values[i];
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // Entries whose home lies cyclically in (i, j] are still reachable
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!reachable) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        return value;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != FREE) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
+
+// BookSearchIndex class - inverted index from title/author words to book slots.
+// Postings are slot-ordered ints with two low bits recording the field(s) the
+// word came from, so AND/OR are linear merges and ranking needs no lookups.
+class BookSearchIndex {
+    private static final int IN_TITLE = 1;
+    private static final int IN_AUTHOR = 2;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int AUTHOR_WEIGHT = 1;
+
+    // Words get dense IDs in first-seen order and each ID's postings live in
+    // parallel arrays, so a word costs its string and one int[] and no map entries.
+    // Words sharing a hash code chain through sameHash, newest first, ending at -1.
+    private String[] words;
+    private int[][] postings;
+    private int[] sizes;
+    private int[] sameHash;
+    private final IntIntMap newestByHash;
+    private int wordCount;
+    // Word IDs in lexicographic order for prefix queries, merged up to date on demand
+    private int[] sorted = new int[0];
+
+    public BookSearchIndex() {
+        this(16);
+    }
+
+    // Room for expectedWords words before anything grows
+    private BookSearchIndex(int expectedWords) {
+        int capacity = Math.max(16, expectedWords);
+        words = new String[capacity];
+        postings = new int[capacity][];
+        sizes = new int[capacity];
+        sameHash = new int[capacity];
+        newestByHash = new IntIntMap(capacity);
+    }
+
+    // Slots must be added in increasing order
+    public void add(int slot, String title, String author) {
+        for (String word : tokenize(title)) {
+            post(findOrAdd(word), slot, IN_TITLE);
+        }
+        for (String word : tokenize(author)) {
+            post(findOrAdd(word), slot, IN_AUTHOR);
+        }
+    }
+
+    // ID of an indexed word, or -1
+    private int find(String word) {
+        int id = newestByHash.get(word.hashCode(), -1);
+        while (id >= 0 && !words[id].equals(word)) {
+            id = sameHash[id];
+        }
+        return id;
+    }
+
+    private int findOrAdd(String word) {
+        int id = find(word);
+        if (id >= 0) {
+            return id;
+        }
+        if (wordCount == words.length) {
+            int capacity = wordCount * 2;
+            words = Arrays.copyOf(words, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            sameHash = Arrays.copyOf(sameHash, capacity);
+        }
+        id = wordCount++;
+        words[id] = word;
+        postings[id] = new int[2];
+        sameHash[id] = newestByHash.get(word.hashCode(), -1);
+        newestByHash.put(word.hashCode(), id);
+        return id;
+    }
+
+    // Appends slot to the word's postings, or adds the field to its last entry
+    private void post(int id, int slot, int field) {
+        int[] entries = postings[id];
+        int size = sizes[id];
+        if (size > 0 && entries[size - 1] >>> 2 == slot) {
+            entries[size - 1] |= field;
+            return;
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size + (size >> 1));
+            postings[id] = entries;
+        }
+        entries[size] = slot << 2 | field;
+        sizes[id] = size + 1;
+    }
+
+    // Lowercased runs of letters and digits
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Slots matching all (or any) query words, best score first, then by slot.
+    // A word ending in '*' matches every indexed word with that prefix.
+    public int[] search(String query, boolean matchAll, int limit) {
+        int[][] hits = null;
+        for (String term : query.trim().split("\\s+")) {
+            boolean prefix = term.endsWith("*");
+            List<String> tokens = tokenize(prefix ? term.substring(0, term.length() - 1) : term);
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            // Punctuation inside a term splits it; the pieces must all match
+            for (int t = 0; t < tokens.size(); t++) {
+                int[][] termHits = termHits(tokens.get(t), prefix && t == tokens.size() - 1);
+                hits = hits == null ? termHits : merge(hits, termHits, matchAll);
+            }
+        }
+        if (hits == null) {
+            return new int[0];
+        }
+        return rank(hits, limit);
+    }
+
+    // {slots, scores} for one word, ordered by slot
+    private int[][] termHits(String token, boolean prefix) {
+        if (!prefix) {
+            int id = find(token);
+            if (id < 0) {
+                return new int[][] {new int[0], new int[0]};
+            }
+            int[] slots = new int[sizes[id]];
+            int[] scores = new int[sizes[id]];
+            for (int i = 0; i < sizes[id]; i++) {
+                slots[i] = postings[id][i] >>> 2;
+                scores[i] = score(postings[id][i] & 3);
+            }
+            return new int[][] {slots, scores};
+        }
+        // Union of every expansion; entries sort by slot, duplicates keep the best field mask
+        int[] order = sortedWords();
+        int first = lowerBound(order, token);
+        int end = first;
+        int total = 0;
+        for (; end < order.length && words[order[end]].startsWith(token); end++) {
+            total += sizes[order[end]];
+        }
+        int[] entries = new int[total];
+        int n = 0;
+        for (int i = first; i < end; i++) {
+            System.arraycopy(postings[order[i]], 0, entries, n, sizes[order[i]]);
+            n += sizes[order[i]];
+        }
+        Arrays.sort(entries);
+        int[] slots = new int[total];
+        int[] scores = new int[total];
+        int count = 0;
+        for (int entry : entries) {
+            int slot = entry >>> 2;
+            int score = score(entry & 3);
+            if (count > 0 && slots[count - 1] == slot) {
+                scores[count - 1] = Math.max(scores[count - 1], score);
+            } else {
+                slots[count] = slot;
+                scores[count++] = score;
+            }
+        }
+        return new int[][] {Arrays.copyOf(slots, count), Arrays.copyOf(scores, count)};
+    }
+
+    private static int score(int fields) {
+        return ((fields & IN_TITLE) != 0 ? TITLE_WEIGHT : 0) + ((fields & IN_AUTHOR) != 0 ? AUTHOR_WEIGHT : 0);
+    }
+
+    // Intersection (matchAll) or union of two slot-ordered hit lists, summing scores
+    private static int[][] merge(int[][] a, int[][] b, boolean matchAll) {
+        int[] aSlots = a[0], aScores = a[1], bSlots = b[0], bScores = b[1];
+        int capacity = matchAll ? Math.min(aSlots.length, bSlots.length) : aSlots.length + bSlots.length;
+        int[] slots = new int[capacity];
+        int[] scores = new int[capacity];
+        int i = 0, j = 0, n = 0;
+        while (i < aSlots.length && j < bSlots.length) {
+            if (aSlots[i] == bSlots[j]) {
+                slots[n] = aSlots[i];
+                scores[n++] = aScores[i++] + bScores[j++];
+            } else if (aSlots[i] < bSlots[j]) {
+                if (!matchAll) {
+                    slots[n] = aSlots[i];
+                    scores[n++] = aScores[i];
+                }
+                i++;
+            } else {
+                if (!matchAll) {
+                    slots[n] = bSlots[j];
+                    scores[n++] = bScores[j];
+                }
+                j++;
+            }
+        }
+        if (!matchAll) {
+            for (; i < aSlots.length; i++, n++) {
+                slots[n] = aSlots[i];
+                scores[n] = aScores[i];
+            }
+            for (; j < bSlots.length; j++, n++) {
+                slots[n] = bSlots[j];
+                scores[n] = bScores[j];
+            }
+        }
+        return new int[][] {Arrays.copyOf(slots, n), Arrays.copyOf(scores, n)};
+    }
+
+    // Highest score first, ties in catalog order. Scores are small sums of field
+    // weights, so one pass per distinct score replaces a full sort of the hits.
+    private static int[] rank(int[][] hits, int limit) {
+        int[] slots = hits[0];
+        int[] scores = hits[1];
+        int maxScore = 0;
+        for (int score : scores) {
+            maxScore = Math.max(maxScore, score);
+        }
+        int[] ranked = new int[Math.min(limit, slots.length)];
+        int n = 0;
+        for (int score = maxScore; score > 0 && n < ranked.length; score--) {
+            for (int i = 0; i < slots.length && n < ranked.length; i++) {
+                if (scores[i] == score) {
+                    ranked[n++] = slots[i];
+                }
+            }
+        }
+        return ranked;
+    }
+
+    // Word IDs in lexicographic order. Words added since the last call are sorted
+    // and merged in, so a bulk load pays for one sort at the first prefix query.
+    // Concurrent searches may all arrive here under a shared lock.
+    private synchronized int[] sortedWords() {
+        int[] order = sorted;
+        if (order.length == wordCount) {
+            return order;
+        }
+        String[] added = Arrays.copyOfRange(words, order.length, wordCount);
+        Arrays.sort(added);
+        int[] merged = new int[wordCount];
+        int from = 0;
+        int n = 0;
+        for (String word : added) {
+            int at = lowerBound(order, word);
+            System.arraycopy(order, from, merged, n, at - from);
+            n += at - from;
+            from = at;
+            merged[n++] = find(word);
+        }
+        System.arraycopy(order, from, merged, n, order.length - from);
+        sorted = merged;
+        return merged;
+    }
+
+    // First position in order whose word is >= key
+    private int lowerBound(int[] order, String key) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[order[mid]].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Snapshot form: [int words]([string word][int size][int entry]*)*[int wordId]* in
+    // lexicographic order, so loading fills the arrays without tokenizing any text
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(wordCount);
+        for (int id = 0; id < wordCount; id++) {
+            LibraryStore.writeString(out, words[id]);
+            out.writeInt(sizes[id]);
+            for (int i = 0; i < sizes[id]; i++) {
+                out.writeInt(postings[id][i]);
+            }
+        }
+        for (int id : sortedWords()) {
+            out.writeInt(id);
+        }
+    }
+
+    static BookSearchIndex readFrom(LibraryStore.MappedInput in) throws IOException {
+        int count = in.readInt();
+        BookSearchIndex index = new BookSearchIndex(count);
+        for (int id = 0; id < count; id++) {
+            String word = in.readString();
+            int size = in.readInt();
+            // At least two entries, as new words start with, so post() can always grow by half
+            int[] entries = new int[Math.max(2, size)];
+            for (int i = 0; i < size; i++) {
+                entries[i] = in.readInt();
+            }
+            index.words[id] = word;
+            index.postings[id] = entries;
+            index.sizes[id] = size;
+            index.sameHash[id] = index.newestByHash.get(word.hashCode(), -1);
+            index.newestByHash.put(word.hashCode(), id);
+        }
+        index.wordCount = count;
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = in.readInt();
+        }
+        index.sorted = sorted;
+        return index;
+    }
+
+    // Drop the spare capacity postings grew while books were added one at a time
+    public void trim() {
+        for (int id = 0; id < wordCount; id++) {
+            // A single spare int is absorbed by object alignment
+            if (postings[id].length - sizes[id] > 1) {
+                postings[id] = Arrays.copyOf(postings[id], sizes[id]);
+            }
+        }
+    }
+
+    public int wordCount() {
+        return wordCount;
+    }
+}
+
+// TrigramIndex class - maps every three-character window of a lowercased field to
+// the slots containing it, so substring queries only verify candidate books
+class TrigramIndex {
+    private static final int SKIP_INTERVAL = 64;
+
+    // Slot-ordered list of the books containing one trigram. Slots are stored as
+    // varint gaps, a byte each once a trigram is in one title of 128, and every
+    // SKIP_INTERVAL-th slot is kept with the offset after it so intersections can seek.
+    private static final class Postings {
+        byte[] gaps = new byte[4];
+        int length;
+        int size;
+        int last = -1;
+        int[] skipSlots = new int[0];
+        int[] skipOffsets = new int[0];
+
+        void add(int slot) {
+            if (slot == last) {
+                return;
+            }
+            if (length + 5 > gaps.length) {
+                // Grow by half: the longest lists hold most of the index, so slack matters more than copies
+                gaps = Arrays.copyOf(gaps, length + 5 + (length >> 1));
+            }
+            int gap = slot - last;
+            while (gap >= 0x80) {
+                gaps[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            gaps[length++] = (byte) gap;
+            last = slot;
+            if (++size % SKIP_INTERVAL == 0) {
+                int skip = size / SKIP_INTERVAL - 1;
+                if (skip == skipSlots.length) {
+                    skipSlots = Arrays.copyOf(skipSlots, Math.max(4, skip * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, skipSlots.length);
+                }
+                skipSlots[skip] = slot;
+                skipOffsets[skip] = length;
+            }
+        }
+
+        int[] toArray() {
+            int[] slots = new int[size];
+            int slot = -1;
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                int gap = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = gaps[offset++];
+                    gap |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                slot += gap;
+                slots[i] = slot;
+            }
+            return slots;
+        }
+
+        // Keeps those of the ascending slots[0, count) that are in this list and
+        // returns how many remain
+        int retainAll(int[] slots, int count) {
+            int skips = size / SKIP_INTERVAL;
+            int nextSkip = 0;
+            int decoded = 0;
+            int slot = -1;
+            int offset = 0;
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int target = slots[i];
+                if (nextSkip < skips && skipSlots[nextSkip] <= target) {
+                    // Last skip entry at or before the target; jump there unless already past it
+                    int low = nextSkip;
+                    int high = skips - 1;
+                    while (low < high) {
+                        int mid = (low + high + 1) >>> 1;
+                        if (skipSlots[mid] <= target) {
+                            low = mid;
+                        } else {
+                            high = mid - 1;
+                        }
+                    }
+                    if ((low + 1) * SKIP_INTERVAL > decoded) {
+                        decoded = (low + 1) * SKIP_INTERVAL;
+                        slot = skipSlots[low];
+                        offset = skipOffsets[low];
+                    }
+                    nextSkip = low + 1;
+                }
+                while (slot < target && decoded < size) {
+                    int gap = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        byte b = gaps[offset++];
+                        gap |= (b & 0x7F) << shift;
+                        if (b >= 0) {
+                            break;
+                        }
+                    }
+                    slot += gap;
+                    decoded++;
+                }
+                if (slot == target) {
+                    slots[n++] = target;
+                }
+            }
+            return n;
+        }
+
+        void trim() {
+            // Lists loaded from a snapshot are already exact
+            if (gaps.length != length) {
+                gaps = Arrays.copyOf(gaps, length);
+            }
+            if (skipSlots.length != size / SKIP_INTERVAL) {
+                skipSlots = Arrays.copyOf(skipSlots, size / SKIP_INTERVAL);
+                skipOffsets = Arrays.copyOf(skipOffsets, skipSlots.length);
+            }
+        }
+
+        // [int size][int last][int length][gap bytes]([int skipSlot][int skipOffset])*
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            out.writeInt(last);
+            out.writeInt(length);
+            out.write(gaps, 0, length);
+            for (int i = 0; i < size / SKIP_INTERVAL; i++) {
+                out.writeInt(skipSlots[i]);
+                out.writeInt(skipOffsets[i]);
+            }
+        }
+
+        static Postings readFrom(LibraryStore.MappedInput in) throws IOException {
+            Postings list = new Postings();
+            list.size = in.readInt();
+            list.last = in.readInt();
+            list.length = in.readInt();
+            list.gaps = new byte[list.length];
+            in.readFully(list.gaps);
+            list.skipSlots = new int[list.size / SKIP_INTERVAL];
+            list.skipOffsets = new int[list.skipSlots.length];
+            for (int i = 0; i < list.skipSlots.length; i++) {
+                list.skipSlots[i] = in.readInt();
+                list.skipOffsets[i] = in.readInt();
+            }
+            return list;
+        }
+    }
+
+    // Trigrams get dense IDs in first-seen order, found through a primitive map
+    // rather than boxed keys. Trigrams sharing a hash code chain through
+    // sameHash, newest first, ending at -1.
+    private long[] trigrams;
+    private Postings[] postings;
+    private int[] sameHash;
+    private final IntIntMap newestByHash;
+    private int trigramCount;
+
+    public TrigramIndex() {
+        this(16);
+    }
+
+    // Room for expectedTrigrams trigrams before anything grows
+    private TrigramIndex(int expectedTrigrams) {
+        int capacity = Math.max(16, expectedTrigrams);
+        trigrams = new long[capacity];
+        postings = new Postings[capacity];
+        sameHash = new int[capacity];
+        newestByHash = new IntIntMap(capacity);
+    }
+
+    // Slots must be added in increasing order; text is indexed as lowercased
+    public void add(int slot, String text) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.toLowerCase();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            int id = findOrAdd(trigram(lower, i));
+            postings[id].add(slot);
+        }
+    }
+
+    // ID of an indexed trigram, or -1
+    private int find(long trigram) {
+        int id = newestByHash.get(Long.hashCode(trigram), -1);
+        while (id >= 0 && trigrams[id] != trigram) {
+            id = sameHash[id];
+        }
+        return id;
+    }
+
+    private int findOrAdd(long trigram) {
+        int id = find(trigram);
+        if (id >= 0) {
+            return id;
+        }
+        if (trigramCount == trigrams.length) {
+            int capacity = trigramCount * 2;
+            trigrams = Arrays.copyOf(trigrams, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            sameHash = Arrays.copyOf(sameHash, capacity);
+        }
+        id = trigramCount++;
+        trigrams[id] = trigram;
+        postings[id] = new Postings();
+        sameHash[id] = newestByHash.get(Long.hashCode(trigram), -1);
+        newestByHash.put(Long.hashCode(trigram), id);
+        return id;
+    }
+
+    private static long trigram(String text, int i) {
+        return (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+    }
+
+    // Slots (ascending) whose text may contain the lowercased needle, or null when
+    // the needle is shorter than a trigram and every slot is a candidate
+    public int[] candidates(String needle) {
+        if (needle.length() < 3) {
+            return null;
+        }
+        Postings[] lists = new Postings[needle.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            int id = find(trigram(needle, i));
+            if (id < 0) {
+                return new int[0];
+            }
+            lists[i] = postings[id];
+        }
+        // Intersect rarest first so the working set only shrinks
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = lists[0].toArray();
+        int count = result.length;
+        for (int l = 1; l < lists.length && count > 0; l++) {
+            count = lists[l].retainAll(result, count);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Drop the spare capacity the slot lists grew while books were added
+    public void trim() {
+        for (int id = 0; id < trigramCount; id++) {
+            postings[id].trim();
+        }
+    }
+
+    // Snapshot form: [int trigrams]([long trigram][postings])*, the slot lists
+    // in their encoded form so loading copies bytes instead of re-adding slots
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(trigramCount);
+        for (int id = 0; id < trigramCount; id++) {
+            out.writeLong(trigrams[id]);
+            postings[id].writeTo(out);
+        }
+    }
+
+    static TrigramIndex readFrom(LibraryStore.MappedInput in) throws IOException {
+        int count = in.readInt();
+        TrigramIndex index = new TrigramIndex(count);
+        for (int id = 0; id < count; id++) {
+            long trigram = in.readLong();
+            index.trigrams[id] = trigram;
+            index.postings[id] = Postings.readFrom(in);
+            index.sameHash[id] = index.newestByHash.get(Long.hashCode(trigram), -1);
+            index.newestByHash.put(Long.hashCode(trigram), id);
+        }
+        index.trigramCount = count;
+        return index;
+    }
+
+    public int trigramCount() {
+        return trigramCount;
+    }
+}
+
+// DueDateIndex class - issued books ordered by return date. Keys pack the due
+// date's epoch day above the book ID, so "overdue" and "due soon" are range
+// views that touch only the matching loans. Safe for concurrent issue/return.
+class DueDateIndex {
+    private final ConcurrentSkipListSet<Long> loans = new ConcurrentSkipListSet<>();
+
+    private static long key(LocalDate due, int bookId) {
+        return due.toEpochDay() << 32 | (bookId & 0xFFFFFFFFL);
+    }
+
+    public static int bookId(long key) {
+        return (int) key;
+    }
+
+    public static LocalDate dueDate(long key) {
+        return LocalDate.ofEpochDay(key >> 32);
+    }
+
+    public void add(LocalDate due, int bookId) {
+        loans.add(key(due, bookId));
+    }
+
+    public void remove(LocalDate due, int bookId) {
+        loans.remove(key(due, bookId));
+    }
+
+    // Loans due strictly before the given date, earliest first
+    public long[] dueBefore(LocalDate date) {
+        return toArray(loans.headSet(key(date, 0)));
+    }
+
+    // Loans due on or after from and before until, earliest first
+    public long[] dueBetween(LocalDate from, LocalDate until) {
+        if (!from.isBefore(until)) {
+            return new long[0];
+        }
+        return toArray(loans.subSet(key(from, 0), key(until, 0)));
+    }
+
+    private static long[] toArray(NavigableSet<Long> view) {
+        long[] keys = new long[16];
+        int n = 0;
+        for (Long key : view) {
+            if (n == keys.length) {
+                keys = Arrays.copyOf(keys, n * 2);
+            }
+            keys[n++] = key;
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    public int size() {
+        return loans.size();
+    }
+}
+
+// BookAvailability class - one bit per book slot, set while the book is issued,
+// plus a running issued count. Bits live in fixed-size atomic pages that never
+// move, so concurrent issues and returns can flip bits while the catalog grows.
+class BookAvailability {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final LongBinaryOperator SET = (word, bit) -> word | bit;
+    private static final LongBinaryOperator CLEAR = (word, bit) -> word & ~bit;
+
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+    private volatile int slots;
+    private final LongAdder issued = new LongAdder();
+
+    // Adds an available slot; only one thread adds at a time
+    public void addSlot() {
+        int slot = slots;
+        int page = slot >>> PAGE_SHIFT;
+        if (page == pages.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(pages, page + 1);
+            grown[page] = new AtomicLongArray(1 << (PAGE_SHIFT - 6));
+            pages = grown;
+        }
+        slots = slot + 1;
+    }
+
+    public void markIssued(int slot) {
+        long bit = 1L << slot;
+        long before = pages[slot >>> PAGE_SHIFT].getAndAccumulate((slot & PAGE_MASK) >>> 6, bit, SET);
+        if ((before & bit) == 0) {
+            issued.increment();
+        }
+    }
+
+    public void markAvailable(int slot) {
+        long bit = 1L << slot;
+        long before = pages[slot >>> PAGE_SHIFT].getAndAccumulate((slot & PAGE_MASK) >>> 6, bit, CLEAR);
+        if ((before & bit) != 0) {
+            issued.decrement();
+        }
+    }
+
+    public boolean isIssued(int slot) {
+        return (pages[slot >>> PAGE_SHIFT].get((slot & PAGE_MASK) >>> 6) & 1L << slot) != 0;
+    }
+
+    public int getIssuedCount() {
+        return (int) issued.sum();
+    }
+
+    public int getAvailableCount() {
+        return slots - getIssuedCount();
+    }
+
+    public void forEachIssued(IntConsumer action) {
+        forEach(action, false);
+    }
+
+    public void forEachAvailable(IntConsumer action) {
+        forEach(action, true);
+    }
+
+    // Visits set (or clear) bits in slot order, skipping whole words at a time.
+    // addSlot publishes pages before slots, so reading slots first guarantees
+    // the pages read next cover every slot below the limit.
+    private void forEach(IntConsumer action, boolean available) {
+        int limit = slots;
+        AtomicLongArray[] snapshot = pages;
+        for (int base = 0; base < limit; base += 64) {
+            long word = snapshot[base >>> PAGE_SHIFT].get((base & PAGE_MASK) >>> 6);
+            if (available) {
+                word = ~word;
+            }
+            if (limit - base < 64) {
+                // Slots added after the limit was read are not visited
+                word &= (1L << (limit - base)) - 1;
+            }
+            while (word != 0) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
+
+// Library class (Main class implementing the interface)
+class Library implements LibraryInterface {
+    public static final long FINE_PER_DAY_CENTS = 25;
+
+    private List<Book> books;
+    private List<User> users;
+    private String libraryName;
+    // ID -> position in books/users; the first entry added under an ID wins
+    private IntIntMap bookIndex;
+    private IntIntMap userIndex;
+    private Map<String, Book> booksByIsbn;
+    private BookSearchIndex searchIndex;
+    private TrigramIndex titleTrigrams;
+    private TrigramIndex authorTrigrams;
+    private DueDateIndex dueDates;
+    private BookAvailability availability;
+    private LibraryJournal journal;
+
+    // Constructor
+    public Library(String libraryName) {
+        this.libraryName = libraryName;
+        this.books = new ArrayList<>();
+        this.users = new ArrayList<>();
+        this.bookIndex = new IntIntMap();
+        this.userIndex = new IntIntMap();
+        this.booksByIsbn = new HashMap<>();
+        this.searchIndex = new BookSearchIndex();
+        this.titleTrigrams = new TrigramIndex();
+        this.authorTrigrams = new TrigramIndex();
+        this.dueDates = new DueDateIndex();
+        this.availability = new BookAvailability();
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        if (book != null) {
+            if (!LibraryJournal.canStore(book.getTitle()) || !LibraryJournal.canStore(book.getAuthor())
+                    || !LibraryJournal.canStore(book.getIsbn())) {
+                System.out.println("Book not added: title, author and ISBN are limited to "
+                        + LibraryJournal.MAX_STRING_BYTES + " bytes each.");
+                return false;
+            }
+            if (journal != null) {
+                journal.logAddBook(books.size(), book);
+            }
+            catalogBook(book, true);
+            System.out.println("Book added successfully: " + book.getTitle());
+            return true;
+        }
+        return false;
+    }
+
+    // Index the book at the next catalog slot; indexText is false only when
+    // the text indexes are restored separately from a snapshot
+    private void catalogBook(Book book, boolean indexText) {
+        int slot = books.size();
+        bookIndex.putIfAbsent(book.getBookId(), slot);
+        if (book.getIsbn() != null) {
+            booksByIsbn.putIfAbsent(book.getIsbn(), book);
+        }
+        if (indexText) {
+            searchIndex.add(slot, book.getTitle(), book.getAuthor());
+            titleTrigrams.add(slot, book.getTitle());
+            authorTrigrams.add(slot, book.getAuthor());
+        }
+        books.add(book);
+        availability.addSlot();
+        if (!book.isAvailable()) {
+            availability.markIssued(slot);
+        }
+    }
+
+    @Override
+    public boolean addUser(User user) {
+        if (user != null) {
+            if (!LibraryJournal.canStore(user.getName()) || !LibraryJournal.canStore(user.getEmail())
+                    || !LibraryJournal.canStore(user.getPhone())) {
+                System.out.println("User not added: name, email and phone are limited to "
+                        + LibraryJournal.MAX_STRING_BYTES + " bytes each.");
+                return false;
+            }
+            if (journal != null) {
+                journal.logAddUser(users.size(), user);
+            }
+            registerUser(user);
+            System.out.println("User added successfully: " + user.getName());
+            return true;
+        }
+        return false;
+    }
+
+    private void registerUser(User user) {
+        userIndex.putIfAbsent(user.getUserId(), users.size());
+        users.add(user);
+    }
+
+    @Override
+    public boolean issueBook(int bookId, int userId) {
+        Book book = findBookById(bookId);
+        User user = findUserById(userId);
+
+        if (book == null) {
+            System.out.println("Book not found!");
+            return false;
+        }
+
+        if (user == null) {
+            System.out.println("User not found!");
+            return false;
+        }
+
+        if (!book.isAvailable()) {
+            System.out.println("Book is already issued!");
+            return false;
+        }
+
+        // Issue the book
+        LocalDate issueDate = LocalDate.now();
+        LocalDate returnDate = issueDate.plusDays(14); // 14 days return period
+        checkOut(book, user, issueDate, returnDate);
+        if (journal != null) {
+            journal.logIssue(bookId, userId, issueDate, returnDate);
+        }
+
+        System.out.println("Book '" + book.getTitle() + "' issued to " + user.getName());
+        System.out.println("Return date: " + book.getReturnDate());
+        return true;
+    }
+
+    @Override
+    public boolean returnBook(int bookId, int userId) {
+        Book book = findBookById(bookId);
+        User user = findUserById(userId);
+
+        if (book == null || user == null) {
+            System.out.println("Book or User not found!");
+            return false;
+        }
+
+        if (book.isAvailable()) {
+            System.out.println("Book is not currently issued!");
+            return false;
+        }
+
+        if (book.getIssuedToUserId() != userId) {
+            System.out.println("Book was not issued to this user!");
+            return false;
+        }
+
+        // Return the book
+        checkIn(book, user);
+        if (journal != null) {
+            journal.logReturn(bookId, userId);
+        }
+
+        System.out.println("Book '" + book.getTitle() + "' returned by " + user.getName());
+        return true;
+    }
+
+    private void checkOut(Book book, User user, LocalDate issueDate, LocalDate returnDate) {
+        book.setAvailable(false);
+        book.setIssueDate(issueDate);
+        book.setReturnDate(returnDate);
+        book.setIssuedToUserId(user.getUserId());
+        user.addIssuedBook(book.getBookId());
+        dueDates.add(returnDate, book.getBookId());
+        availability.markIssued(findBookSlot(book.getBookId()));
+    }
+
+    private void checkIn(Book book, User user) {
+        dueDates.remove(book.getReturnDate(), book.getBookId());
+        book.setAvailable(true);
+        book.setIssueDate(null);
+        book.setReturnDate(null);
+        book.setIssuedToUserId(-1);
+        user.removeIssuedBook(book.getBookId());
+        availability.markAvailable(findBookSlot(book.getBookId()));
+    }
+
+    // Recovery methods used by LibraryStore: same state changes as the public
+    // operations, without console output or journaling. Loan replay is
+    // idempotent, so records already reflected in a snapshot are skipped.
+    public void restoreBook(Book book) {
+        catalogBook(book, true);
+    }
+
+    // Recovery into an empty catalog: size the list and lookup maps for the
+    // count a snapshot declares, so a multi-million book load never regrows them
+    void reserveBooks(int count) {
+        if (books.isEmpty()) {
+            books = new ArrayList<>(count);
+            bookIndex = new IntIntMap(count);
+            booksByIsbn = new HashMap<>(count / 3 * 4 + 16);
+        }
+    }
+
+    void reserveUsers(int count) {
+        if (users.isEmpty()) {
+            users = new ArrayList<>(count);
+            userIndex = new IntIntMap(count);
+        }
+    }
+
+    // Snapshot recovery: the title and author are already in the text indexes
+    // that restoreTextIndexes loads once every such book is restored
+    public void restoreBookWithoutText(Book book) {
+        catalogBook(book, false);
+    }
+
+    // The word and trigram indexes in their snapshot form, covering every slot
+    void writeTextIndexes(DataOutputStream out) throws IOException {
+        out.writeInt(books.size());
+        searchIndex.writeTo(out);
+        titleTrigrams.writeTo(out);
+        authorTrigrams.writeTo(out);
+    }
+
+    // Replace the text indexes with ones read back from writeTextIndexes; they
+    // must cover exactly the books restored so far
+    void restoreTextIndexes(LibraryStore.MappedInput in) throws IOException {
+        int covered = in.readInt();
+        if (covered != books.size()) {
+            throw new IOException("Library snapshot indexes cover " + covered + " books, catalog has " + books.size());
+        }
+        searchIndex = BookSearchIndex.readFrom(in);
+        titleTrigrams = TrigramIndex.readFrom(in);
+        authorTrigrams = TrigramIndex.readFrom(in);
+    }
+
+    public void restoreUser(User user) {
+        registerUser(user);
+    }
+
+    // Called once recovery has restored everything, before new changes arrive
+    public void finishRestore() {
+        searchIndex.trim();
+        titleTrigrams.trim();
+        authorTrigrams.trim();
+    }
+
+    public boolean restoreLoan(int bookId, int userId, LocalDate issueDate, LocalDate returnDate) {
+        Book book = findBookById(bookId);
+        User user = findUserById(userId);
+        if (book == null || user == null || !book.isAvailable()) {
+            return false;
+        }
+        checkOut(book, user, issueDate, returnDate);
+        return true;
+    }
+
+    public boolean restoreReturn(int bookId, int userId) {
+        Book book = findBookById(bookId);
+        User user = findUserById(userId);
+        if (book == null || user == null || book.isAvailable() || book.getIssuedToUserId() != userId) {
+            return false;
+        }
+        checkIn(book, user);
+        return true;
+    }
+
+    // Log every later catalog change and loan to the journal
+    public void attachJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
+    // Return once every change logged so far has been forced to disk
+    public void awaitDurable() {
+        LibraryJournal current = journal;
+        if (current != null) {
+            current.awaitDurable(current.getRecordCount());
+        }
+    }
+
+    public void forEachBook(Consumer<Book> action) {
+        books.forEach(action);
+    }
+
+    public void forEachUser(Consumer<User> action) {
+        users.forEach(action);
+    }
+
+    // Run several reads, such as a snapshot's counts and records, against one
+    // unchanging catalog; ConcurrentLibrary holds its catalog read lock for it
+    public void readCatalog(Runnable pass) {
+        pass.run();
+    }
+
+    @Override
+    public List<Book> searchBooksByTitle(String title) {
+        return substringSearch(titleTrigrams, title, Book::getTitle);
+    }
+
+    @Override
+    public List<Book> searchBooksByAuthor(String author) {
+        return substringSearch(authorTrigrams, author, Book::getAuthor);
+    }
+
+    // Case-insensitive contains match: the trigram index narrows the candidates
+    // and each one is verified, so results equal a full scan in catalog order
+    private List<Book> substringSearch(TrigramIndex index, String query, Function<Book, String> field) {
+        String needle = query.toLowerCase();
+        int[] candidates = index.candidates(needle);
+        if (candidates == null) {
+            return books.stream()
+                    .filter(book -> field.apply(book).toLowerCase().contains(needle))
+                    .collect(Collectors.toList());
+        }
+        List<Book> results = new ArrayList<>();
+        for (int slot : candidates) {
+            Book book = books.get(slot);
+            if (field.apply(book).toLowerCase().contains(needle)) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+
+    // Keyword search over title and author words through the inverted index;
+    // "word*" matches a prefix, and title matches rank above author matches
+    public List<Book> searchBooks(String query, boolean matchAll, int limit) {
+        List<Book> results = new ArrayList<>();
+        for (int slot : searchIndex.search(query, matchAll, limit)) {
+            results.add(books.get(slot));
+        }
+        return results;
+    }
+
+    @Override
+    public void displayAllBooks() {
+        System.out.println("\n=== All Books in " + libraryName + " ===");
+        if (books.isEmpty()) {
+            System.out.println("No books available.");
+            return;
+        }
+
+        for (Book book : books) {
+            printBook(book);
+        }
+    }
+
+    // One catalog entry with its loan, if any. ConcurrentLibrary holds the
+    // book's monitor here so a concurrent return cannot tear the entry.
+    protected void printBook(Book book) {
+        System.out.println(book);
+        if (!book.isAvailable()) {
+            User user = findUserById(book.getIssuedToUserId());
+            System.out.println("  -> Issued to: " + (user != null ? user.getName() : "Unknown"));
+            System.out.println("  -> Return Date: " + book.getReturnDate());
+        }
+    }
+
+    @Override
+    public void displayAllUsers() {
+        System.out.println("\n=== All Users in " + libraryName + " ===");
+        if (users.isEmpty()) {
+            System.out.println("No users registered.");
+            return;
+        }
+
+        IntConsumer printTitle = bookId -> {
+            Book book = findBookById(bookId);
+            if (book != null) {
+                System.out.println("    - " + book.getTitle());
+            }
+        };
+        for (User user : users) {
+            printUser(user, printTitle);
+        }
+    }
+
+    // One user with the titles they hold. ConcurrentLibrary holds the user's
+    // monitor here, which is what issue and return change the set under.
+    protected void printUser(User user, IntConsumer printTitle) {
+        System.out.println(user);
+        if (user.getIssuedBookCount() > 0) {
+            System.out.println("  -> Issued Books:");
+            user.forEachIssuedBook(printTitle);
+        }
+    }
+
+    // Lookup methods backed by the ID and ISBN indexes
+    public Book findBookById(int bookId) {
+        int slot = bookIndex.get(bookId, -1);
+        return slot < 0 ? null : books.get(slot);
+    }
+
+    public User findUserById(int userId) {
+        int slot = userIndex.get(userId, -1);
+        return slot < 0 ? null : users.get(slot);
+    }
+
+    public Book findBookByIsbn(String isbn) {
+        return booksByIsbn.get(isbn);
+    }
+
+    // Position of the book in the catalog, or -1 if unknown
+    protected int findBookSlot(int bookId) {
+        return bookIndex.get(bookId, -1);
+    }
+
+    public int getBookCount() {
+        return books.size();
+    }
+
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public int getAvailableCount() {
+        return availability.getAvailableCount();
+    }
+
+    public int getIssuedCount() {
+        return availability.getIssuedCount();
+    }
+
+    // Additional utility methods
+    public void displayAvailableBooks() {
+        System.out.println("\n=== Available Books (" + getAvailableCount() + " of " + books.size() + ") ===");
+        availability.forEachAvailable(slot -> System.out.println(books.get(slot)));
+    }
+
+    public void displayIssuedBooks() {
+        System.out.println("\n=== Issued Books (" + getIssuedCount() + " of " + books.size() + ") ===");
+        availability.forEachIssued(slot -> printBook(books.get(slot)));
+    }
+
+    // Books whose return date is before today, most overdue first
+    public List<Book> getOverdueBooks(LocalDate today) {
+        return booksFor(dueDates.dueBefore(today));
+    }
+
+    // Books due from today through the next days days, soonest first
+    public List<Book> getBooksDueWithin(LocalDate today, int days) {
+        return booksFor(dueDates.dueBetween(today, today.plusDays(days + 1L)));
+    }
+
+    // Books whose loan is still the one the index entry records; a book
+    // returned since the index was read is left out
+    private List<Book> booksFor(long[] loans) {
+        List<Book> result = new ArrayList<>();
+        for (long loan : loans) {
+            Book book = findBookById(DueDateIndex.bookId(loan));
+            if (book != null && borrowerOf(book, DueDateIndex.dueDate(loan)) != -1) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    // The user holding the book on a loan due on due, or -1 if the book is
+    // not on that loan. ConcurrentLibrary reads the loan under the book's
+    // monitor so a concurrent return or reissue cannot be seen half done.
+    protected int borrowerOf(Book book, LocalDate due) {
+        if (book.isAvailable() || !due.equals(book.getReturnDate())) {
+            return -1;
+        }
+        return book.getIssuedToUserId();
+    }
+
+    // Outstanding fine per user for every overdue loan, e.g. for a nightly run;
+    // uses the due date recorded in the index, not a second read of the book
+    public Map<Integer, Long> calculateFines(LocalDate today) {
+        Map<Integer, Long> fines = new LinkedHashMap<>();
+        for (long loan : dueDates.dueBefore(today)) {
+            Book book = findBookById(DueDateIndex.bookId(loan));
+            if (book == null) {
+                continue;
+            }
+            LocalDate due = DueDateIndex.dueDate(loan);
+            int userId = borrowerOf(book, due);
+            if (userId != -1) {
+                fines.merge(userId, fineFor(due, today), Long::sum);
+            }
+        }
+        return fines;
+    }
+
+    private static long fineFor(LocalDate due, LocalDate today) {
+        return ChronoUnit.DAYS.between(due, today) * FINE_PER_DAY_CENTS;
+    }
+
+    private static String formatCents(long cents) {
+        return String.format("$%d.%02d", cents / 100, cents % 100);
+    }
+
+    public void displayOverdueBooks(LocalDate today) {
+        System.out.println("\n=== Overdue Books (as of " + today + ") ===");
+        long[] loans = dueDates.dueBefore(today);
+        if (loans.length == 0) {
+            System.out.println("No overdue books.");
+            return;
+        }
+        for (long loan : loans) {
+            Book book = findBookById(DueDateIndex.bookId(loan));
+            if (book != null) {
+                printOverdueBook(book, DueDateIndex.dueDate(loan), today);
+            }
+        }
+        System.out.println("\n--- Fines by User ---");
+        for (Map.Entry<Integer, Long> fine : calculateFines(today).entrySet()) {
+            User user = findUserById(fine.getKey());
+            System.out.println((user != null ? user.getName() : "Unknown") + ": " + formatCents(fine.getValue()));
+        }
+    }
+
+    // One overdue loan, unless the book has been returned since the index was
+    // read. ConcurrentLibrary holds the book's monitor here, as in printBook.
+    protected void printOverdueBook(Book book, LocalDate due, LocalDate today) {
+        int userId = borrowerOf(book, due);
+        if (userId == -1) {
+            return;
+        }
+        User user = findUserById(userId);
+        System.out.println(book);
+        System.out.println("  -> Issued to: " + (user != null ? user.getName() : "Unknown"));
+        System.out.println("  -> Due: " + due + " (" + ChronoUnit.DAYS.between(due, today)
+                + " days overdue, fine " + formatCents(fineFor(due, today)) + ")");
+    }
+
+    public void displayBooksDueWithin(LocalDate today, int days) {
+        System.out.println("\n=== Books Due in the Next " + days + " Days ===");
+        long[] loans = dueDates.dueBetween(today, today.plusDays(days + 1L));
+        if (loans.length == 0) {
+            System.out.println("No books due.");
+            return;
+        }
+        for (long loan : loans) {
+            Book book = findBookById(DueDateIndex.bookId(loan));
+            if (book != null) {
+                System.out.println(book);
+                System.out.println("  -> Due: " + DueDateIndex.dueDate(loan));
+            }
+        }
+    }
+}
+
+// ConcurrentLibrary class - Library that many circulation desks can share.
+// Issue and return run under the book's monitor and then the user's, always in
+// that order, so each loan is one atomic state transition and desks working on
+// different books never wait on each other. Catalog changes take a write lock;
+// lookups go through the base class's primitive ID indexes under the read lock.
+// The read lock is always taken before any book or user monitor, so a monitor
+// holder's nested lookup is a reentrant read and cannot queue behind a writer.
+class ConcurrentLibrary extends Library {
+    private final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+
+    public ConcurrentLibrary(String libraryName) {
+        super(libraryName);
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        catalogLock.writeLock().lock();
+        try {
+            return super.addBook(book);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restoreBook(Book book) {
+        catalogLock.writeLock().lock();
+        try {
+            super.restoreBook(book);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void reserveBooks(int count) {
+        catalogLock.writeLock().lock();
+        try {
+            super.reserveBooks(count);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void reserveUsers(int count) {
+        catalogLock.writeLock().lock();
+        try {
+            super.reserveUsers(count);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restoreBookWithoutText(Book book) {
+        catalogLock.writeLock().lock();
+        try {
+            super.restoreBookWithoutText(book);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void restoreTextIndexes(LibraryStore.MappedInput in) throws IOException {
+        catalogLock.writeLock().lock();
+        try {
+            super.restoreTextIndexes(in);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void finishRestore() {
+        catalogLock.writeLock().lock();
+        try {
+            super.finishRestore();
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addUser(User user) {
+        catalogLock.writeLock().lock();
+        try {
+            return super.addUser(user);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restoreUser(User user) {
+        catalogLock.writeLock().lock();
+        try {
+            super.restoreUser(user);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean restoreLoan(int bookId, int userId, LocalDate issueDate, LocalDate returnDate) {
+        catalogLock.readLock().lock();
+        try {
+            Book book = super.findBookById(bookId);
+            User user = super.findUserById(userId);
+            if (book == null || user == null) {
+                return false;
+            }
+            synchronized (book) {
+                synchronized (user) {
+                    return super.restoreLoan(bookId, userId, issueDate, returnDate);
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean restoreReturn(int bookId, int userId) {
+        catalogLock.readLock().lock();
+        try {
+            Book book = super.findBookById(bookId);
+            User user = super.findUserById(userId);
+            if (book == null || user == null) {
+                return false;
+            }
+            synchronized (book) {
+                synchronized (user) {
+                    return super.restoreReturn(bookId, userId);
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachBook(Consumer<Book> action) {
+        catalogLock.readLock().lock();
+        try {
+            super.forEachBook(action);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        catalogLock.readLock().lock();
+        try {
+            super.forEachUser(action);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void readCatalog(Runnable pass) {
+        catalogLock.readLock().lock();
+        try {
+            super.readCatalog(pass);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean issueBook(int bookId, int userId) {
+        catalogLock.readLock().lock();
+        try {
+            Book book = super.findBookById(bookId);
+            User user = super.findUserById(userId);
+            if (book == null) {
+                System.out.println("Book not found!");
+                return false;
+            }
+            if (user == null) {
+                System.out.println("User not found!");
+                return false;
+            }
+            synchronized (book) {
+                synchronized (user) {
+                    return super.issueBook(bookId, userId);
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean returnBook(int bookId, int userId) {
+        catalogLock.readLock().lock();
+        try {
+            Book book = super.findBookById(bookId);
+            User user = super.findUserById(userId);
+            if (book == null || user == null) {
+                System.out.println("Book or User not found!");
+                return false;
+            }
+            synchronized (book) {
+                synchronized (user) {
+                    return super.returnBook(bookId, userId);
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book findBookById(int bookId) {
+        catalogLock.readLock().lock();
+        try {
+            return super.findBookById(bookId);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User findUserById(int userId) {
+        catalogLock.readLock().lock();
+        try {
+            return super.findUserById(userId);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected int findBookSlot(int bookId) {
+        catalogLock.readLock().lock();
+        try {
+            return super.findBookSlot(bookId);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        catalogLock.readLock().lock();
+        try {
+            return super.findBookByIsbn(isbn);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getBookCount() {
+        catalogLock.readLock().lock();
+        try {
+            return super.getBookCount();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getUserCount() {
+        catalogLock.readLock().lock();
+        try {
+            return super.getUserCount();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> searchBooksByTitle(String title) {
+        catalogLock.readLock().lock();
+        try {
+            return super.searchBooksByTitle(title);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> searchBooksByAuthor(String author) {
+        catalogLock.readLock().lock();
+        try {
+            return super.searchBooksByAuthor(author);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, boolean matchAll, int limit) {
+        catalogLock.readLock().lock();
+        try {
+            return super.searchBooks(query, matchAll, limit);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void displayAllBooks() {
+        catalogLock.readLock().lock();
+        try {
+            super.displayAllBooks();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void displayAllUsers() {
+        catalogLock.readLock().lock();
+        try {
+            super.displayAllUsers();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    // Only the one monitor is taken in each, so neither can invert the
+    // book-then-user order that issue and return lock in
+    @Override
+    protected void printBook(Book book) {
+        synchronized (book) {
+            super.printBook(book);
+        }
+    }
+
+    @Override
+    protected void printUser(User user, IntConsumer printTitle) {
+        synchronized (user) {
+            super.printUser(user, printTitle);
+        }
+    }
+
+    @Override
+    protected int borrowerOf(Book book, LocalDate due) {
+        synchronized (book) {
+            return super.borrowerOf(book, due);
+        }
+    }
+
+    @Override
+    protected void printOverdueBook(Book book, LocalDate due, LocalDate today) {
+        synchronized (book) {
+            super.printOverdueBook(book, due, today);
+        }
+    }
+
+    // Held throughout so the user lookups made under each book's monitor are
+    // reentrant reads
+    @Override
+    public void displayOverdueBooks(LocalDate today) {
+        catalogLock.readLock().lock();
+        try {
+            super.displayOverdueBooks(today);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void displayAvailableBooks() {
+        catalogLock.readLock().lock();
+        try {
+            super.displayAvailableBooks();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void displayIssuedBooks() {
+        catalogLock.readLock().lock();
+        try {
+            super.displayIssuedBooks();
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+}
+
+// LibraryJournal class - append-only binary log of catalog additions, issues
+// and returns. Appends only copy into an in-memory buffer; sync() swaps the
+// buffer out, writes it through the FileChannel and forces it, so every event
+// logged since the last sync shares one fsync (group commit); awaitDurable lets
+// a caller wait for the fsync that covers its own records.
+// Record layout: [int length][payload][int CRC32 of payload].
+// Once a write fails the journal refuses further records rather than letting
+// the catalog drift ahead of what is on disk.
+class LibraryJournal implements Closeable {
+    static final byte ADD_BOOK = 1;
+    static final byte ADD_USER = 2;
+    static final byte ISSUE = 3;
+    static final byte RETURN = 4;
+    // String length marking null; longer strings cannot be stored
+    static final int NULL_STRING = 0xFFFF;
+    static final int MAX_STRING_BYTES = NULL_STRING - 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final Object flushLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private ByteBuffer standby;
+    private long recordCount;
+    private volatile long durableCount;
+    private volatile IOException failure;
+
+    public LibraryJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.standby = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    // Slots let replay skip additions that a snapshot already contains
+    public void logAddBook(int slot, Book book) {
+        byte[] title = encode(book.getTitle());
+        byte[] author = encode(book.getAuthor());
+        byte[] isbn = encode(book.getIsbn());
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(1 + 4 + 4 + size(title) + size(author) + size(isbn));
+            buffer.put(ADD_BOOK).putInt(slot).putInt(book.getBookId());
+            putString(title);
+            putString(author);
+            putString(isbn);
+            endRecord(start);
+        }
+    }
+
+    public void logAddUser(int slot, User user) {
+        byte[] name = encode(user.getName());
+        byte[] email = encode(user.getEmail());
+        byte[] phone = encode(user.getPhone());
+        synchronized (this) {
+            checkHealthy();
+            int start = beginRecord(1 + 4 + 4 + size(name) + size(email) + size(phone));
+            buffer.put(ADD_USER).putInt(slot).putInt(user.getUserId());
+            putString(name);
+            putString(email);
+            putString(phone);
+            endRecord(start);
+        }
+    }
+
+    public synchronized void logIssue(int bookId, int userId, LocalDate issueDate, LocalDate returnDate) {
+        checkHealthy();
+        int start = beginRecord(1 + 4 + 4 + 8 + 8);
+        buffer.put(ISSUE).putInt(bookId).putInt(userId);
+        buffer.putLong(issueDate.toEpochDay()).putLong(returnDate.toEpochDay());
+        endRecord(start);
+    }
+
+    public synchronized void logReturn(int bookId, int userId) {
+        checkHealthy();
+        int start = beginRecord(1 + 4 + 4);
+        buffer.put(RETURN).putInt(bookId).putInt(userId);
+        endRecord(start);
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    // Wait until the first `target` records are forced to disk. A caller that
+    // finds a flush in progress queues behind it and then forces whatever
+    // piled up meanwhile, so simultaneous waiters are served by one fsync.
+    public void awaitDurable(long target) {
+        while (durableCount < target) {
+            sync();
+        }
+    }
+
+    private void checkHealthy() {
+        if (failure != null) {
+            throw new UncheckedIOException("Library journal stopped after a failed write", failure);
+        }
+    }
+
+    // Whether the journal and snapshots can hold the value; callers check
+    // before logging, since encode refuses anything longer
+    static boolean canStore(String value) {
+        // A char never takes more than three UTF-8 bytes
+        return value == null || value.length() * 3 <= MAX_STRING_BYTES
+                || value.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES;
+    }
+
+    static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Text too long to store: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int size(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+        } else {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    private int beginRecord(int payloadLength) {
+        int needed = payloadLength + 8;
+        if (buffer.remaining() < needed) {
+            // Appends never block on I/O; the buffer just grows until the next sync
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putInt(payloadLength);
+        return buffer.position();
+    }
+
+    private void endRecord(int start) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start).limit(buffer.position());
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+        recordCount++;
+    }
+
+    // Group commit: write and force everything logged since the previous sync
+    public void sync() {
+        synchronized (flushLock) {
+            checkHealthy();
+            ByteBuffer pending;
+            FileChannel target;
+            long covered;
+            synchronized (this) {
+                if (buffer.position() == 0) {
+                    return;
+                }
+                pending = buffer;
+                buffer = standby != null ? standby : ByteBuffer.allocate(BUFFER_SIZE);
+                standby = null;
+                target = channel;
+                covered = recordCount;
+            }
+            writeFully(target, pending);
+            durableCount = covered;
+            synchronized (this) {
+                standby = pending;
+            }
+        }
+    }
+
+    // Flush into the current file, then direct all later records to a new one
+    public void rotate(Path nextFile) throws IOException {
+        FileChannel next = FileChannel.open(nextFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        synchronized (flushLock) {
+            checkHealthy();
+            ByteBuffer pending;
+            FileChannel previous;
+            long covered;
+            synchronized (this) {
+                pending = buffer;
+                buffer = standby != null ? standby : ByteBuffer.allocate(BUFFER_SIZE);
+                standby = null;
+                previous = channel;
+                channel = next;
+                covered = recordCount;
+            }
+            writeFully(previous, pending);
+            durableCount = covered;
+            synchronized (this) {
+                standby = pending;
+            }
+            previous.close();
+        }
+    }
+
+    // The records in `pending` are lost if this fails, so the journal is
+    // marked failed instead of carrying on with a gap in it
+    private void writeFully(FileChannel target, ByteBuffer pending) {
+        try {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                target.write(pending);
+            }
+            target.force(false);
+            pending.clear();
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Failed to write library journal", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        synchronized (flushLock) {
+            channel.close();
+        }
+    }
+
+    // Re-apply every intact record of a journal file to the library. Reading stops
+    // at the first torn or corrupt record, which can only be the unsynced tail.
+    public static long replay(Path file, Library library) throws IOException {
+        long replayed = 0;
+        CRC32 checksum = new CRC32();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            chunk.flip();
+            while (true) {
+                if (!fill(in, chunk, 4)) {
+                    break;
+                }
+                int length = chunk.getInt(chunk.position());
+                if (length <= 0 || length > READ_BUFFER_SIZE - 8 || !fill(in, chunk, length + 8)) {
+                    break;
+                }
+                ByteBuffer payload = chunk.duplicate();
+                payload.position(chunk.position() + 4).limit(chunk.position() + 4 + length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != chunk.getInt(chunk.position() + 4 + length)) {
+                    break;
+                }
+                apply(payload, library);
+                chunk.position(chunk.position() + length + 8);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    // Make sure at least `needed` unread bytes are buffered; false at end of file
+    private static boolean fill(FileChannel in, ByteBuffer chunk, int needed) throws IOException {
+        if (chunk.remaining() >= needed) {
+            return true;
+        }
+        chunk.compact();
+        while (chunk.position() < needed) {
+            if (in.read(chunk) < 0) {
+                chunk.flip();
+                return false;
+            }
+        }
+        chunk.flip();
+        return true;
     }
 
-    public void removeIssuedBook(int bookId) {
-        issuedBooks.remove(Integer.valueOf(bookId));
+    private static void apply(ByteBuffer payload, Library library) {
+        byte kind = payload.get();
+        if (kind == ADD_BOOK) {
+            int slot = payload.getInt();
+            Book book = new Book(payload.getInt(), readString(payload), readString(payload), readString(payload));
+            if (slot >= library.getBookCount()) {
+                library.restoreBook(book);
+            }
+        } else if (kind == ADD_USER) {
+            int slot = payload.getInt();
+            User user = new User(payload.getInt(), readString(payload), readString(payload), readString(payload));
+            if (slot >= library.getUserCount()) {
+                library.restoreUser(user);
+            }
+        } else if (kind == ISSUE) {
+            int bookId = payload.getInt();
+            int userId = payload.getInt();
+            library.restoreLoan(bookId, userId,
+                LocalDate.ofEpochDay(payload.getLong()), LocalDate.ofEpochDay(payload.getLong()));
+        } else if (kind == RETURN) {
+            library.restoreReturn(payload.getInt(), payload.getInt());
+        }
     }
 
-    @Override
-    public String toString() {
-        return "User{" +
-                "ID=" + userId +
-                ", Name='" + name + '\'' +
-                ", Email='" + email + '\'' +
-                ", Phone='" + phone + '\'' +
-                ", Issued Books=" + issuedBooks.size() +
-                '}';
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 }
 
-// LibraryInterface (Interface for abstraction)
-interface LibraryInterface {
-    boolean addBook(Book book);
-    boolean addUser(User user);
-    boolean issueBook(int bookId, int userId);
-    boolean returnBook(int bookId, int userId);
-    List<Book> searchBooksByTitle(String title);
-    List<Book> searchBooksByAuthor(String author);
-    void displayAllBooks();
-    void displayAllUsers();
-}
+// LibraryStore class - durable home of a Library: the latest compact snapshot
+// plus the journal segments written since it. Recovery maps the snapshot into
+// memory, rebuilds the catalog from it and replays the journal tail on top;
+// checkpoints run periodically and on close.
+// Snapshot layout: magic, version, users, then books in catalog order, each
+// book followed by its open loan if it has one, then (from version 2) the
+// word and trigram indexes as flat arrays, loaded in bulk instead of being
+// rebuilt from every title and author.
+class LibraryStore implements Closeable {
+    private static final String SNAPSHOT_FILE = "library.snapshot";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int SNAPSHOT_MAGIC = 0x4C494253; // "LIBS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final long GROUP_COMMIT_MILLIS = 10;
+    private static final long CHECKPOINT_MINUTES = 5;
 
-// Library class (Main class implementing the interface)
-class Library implements LibraryInterface {
-    private List<Book> books;
-    private List<User> users;
-    private String libraryName;
+    private final Path directory;
+    private final Library library;
+    private final LibraryJournal journal;
+    private final ScheduledExecutorService scheduler;
+    private long segment;
+    private long recordsAtCheckpoint;
+    private boolean closed;
+    private volatile boolean failureReported;
 
-    // Constructor
-    public Library(String libraryName) {
-        this.libraryName = libraryName;
-        this.books = new ArrayList<>();
-        this.users = new ArrayList<>();
+    private LibraryStore(Path directory, Library library, LibraryJournal journal, long segment) {
+        this.directory = directory;
+        this.library = library;
+        this.journal = journal;
+        this.segment = segment;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::backgroundSync, GROUP_COMMIT_MILLIS, GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::periodicCheckpoint, CHECKPOINT_MINUTES, CHECKPOINT_MINUTES, TimeUnit.MINUTES);
     }
 
-    @Override
-    public boolean addBook(Book book) {
-        if (book != null) {
-            books.add(book);
-            System.out.println("Book added successfully: " + book.getTitle());
-            return true;
+    // Recover the catalog kept in the directory (creating it if needed) into an
+    // empty library and start journaling its changes
+    public static LibraryStore open(Path directory, Library library) throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            readSnapshot(snapshot, library);
         }
-        return false;
-    }
 
-    @Override
-    public boolean addUser(User user) {
-        if (user != null) {
-            users.add(user);
-            System.out.println("User added successfully: " + user.getName());
-            return true;
+        long replayed = 0;
+        List<Long> segments = listSegments(directory);
+        for (long existing : segments) {
+            replayed += LibraryJournal.replay(segmentPath(directory, existing), library);
         }
-        return false;
+
+        library.finishRestore();
+        if (Files.exists(snapshot) || replayed > 0) {
+            System.out.printf("Recovered %d books and %d users (%d journal records replayed) in %.1f ms%n",
+                library.getBookCount(), library.getUserCount(), replayed, (System.nanoTime() - start) / 1e6);
+        }
+
+        long segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        LibraryJournal journal = new LibraryJournal(segmentPath(directory, segment));
+        library.attachJournal(journal);
+        return new LibraryStore(directory, library, journal, segment);
     }
 
-    @Override
-    public boolean issueBook(int bookId, int userId) {
-        Book book = findBookById(bookId);
-        User user = findUserById(userId);
+    public Library getLibrary() {
+        return library;
+    }
 
-        if (book == null) {
-            System.out.println("Book not found!");
-            return false;
+    // Write a fresh snapshot and drop the journal segments it covers. The journal
+    // is rotated first, so every record in an older segment is already reflected
+    // in the state read below; records in the new segment may or may not be, and
+    // replay skips those by catalog slot and current loan state.
+    public synchronized void checkpoint() throws IOException {
+        long covered = segment;
+        segment++;
+        journal.rotate(segmentPath(directory, segment));
+        recordsAtCheckpoint = journal.getRecordCount();
+
+        Path target = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        writeSnapshot(temp, library);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be on disk before the segments it replaces are removed
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
         }
 
-        if (user == null) {
-            System.out.println("User not found!");
-            return false;
+        for (long existing : listSegments(directory)) {
+            if (existing <= covered) {
+                Files.deleteIfExists(segmentPath(directory, existing));
+            }
         }
+    }
 
-        if (!book.isAvailable()) {
-            System.out.println("Book is already issued!");
-            return false;
+    // Flush changes that no caller waited for. A scheduled task that throws is
+    // cancelled without a trace, so failures are caught and reported here; the
+    // journal itself stays failed and the next change made will throw.
+    private void backgroundSync() {
+        try {
+            journal.sync();
+        } catch (UncheckedIOException e) {
+            reportFailure(e);
         }
+    }
 
-        // Issue the book
-        book.setAvailable(false);
-        book.setIssueDate(LocalDate.now());
-        book.setReturnDate(LocalDate.now().plusDays(14)); // 14 days return period
-        book.setIssuedToUserId(userId);
-        user.addIssuedBook(bookId);
+    private synchronized void periodicCheckpoint() {
+        if (closed || journal.getRecordCount() == recordsAtCheckpoint) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Checkpoint failed: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            reportFailure(e);
+        } catch (RuntimeException e) {
+            // Anything else escaping would cancel every later checkpoint
+            System.out.println("Checkpoint failed: " + e);
+        }
+    }
 
-        System.out.println("Book '" + book.getTitle() + "' issued to " + user.getName());
-        System.out.println("Return date: " + book.getReturnDate());
-        return true;
+    private void reportFailure(UncheckedIOException e) {
+        if (!failureReported) {
+            failureReported = true;
+            System.err.println("FATAL: library data is no longer being saved: " + e.getCause());
+        }
     }
 
     @Override
-    public boolean returnBook(int bookId, int userId) {
-        Book book = findBookById(bookId);
-        User user = findUserById(userId);
-
-        if (book == null || user == null) {
-            System.out.println("Book or User not found!");
-            return false;
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
         }
+        closed = true;
+        scheduler.shutdown();
+        checkpoint();
+        journal.close();
+    }
 
-        if (book.isAvailable()) {
-            System.out.println("Book is not currently issued!");
-            return false;
+    private static void writeSnapshot(Path file, Library library) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            try {
+                // One pass under the catalog read lock, so the counts in the
+                // header match the records that follow them
+                library.readCatalog(() -> writeCatalog(out, library));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
         }
-
-        if (book.getIssuedToUserId() != userId) {
-            System.out.println("Book was not issued to this user!");
-            return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
         }
+    }
 
-        // Return the book
-        book.setAvailable(true);
-        book.setIssueDate(null);
-        book.setReturnDate(null);
-        book.setIssuedToUserId(-1);
-        user.removeIssuedBook(bookId);
+    // Users, then books with their loans. IO failures are rethrown unchecked
+    // because this runs inside the library's readCatalog callback.
+    private static void writeCatalog(DataOutputStream out, Library library) {
+        try {
+            // Users are written before books so that loans can be restored as they are read
+            int userCount = library.getUserCount();
+            int[] written = new int[1];
+            out.writeInt(userCount);
+            library.forEachUser(user -> {
+                try {
+                    out.writeInt(user.getUserId());
+                    writeString(out, user.getName());
+                    writeString(out, user.getEmail());
+                    writeString(out, user.getPhone());
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            checkCount("users", userCount, written[0]);
 
-        System.out.println("Book '" + book.getTitle() + "' returned by " + user.getName());
-        return true;
+            int bookCount = library.getBookCount();
+            written[0] = 0;
+            out.writeInt(bookCount);
+            library.forEachBook(book -> {
+                try {
+                    // Under the book's monitor so a concurrent issue or return is seen whole
+                    synchronized (book) {
+                        out.writeInt(book.getBookId());
+                        writeString(out, book.getTitle());
+                        writeString(out, book.getAuthor());
+                        writeString(out, book.getIsbn());
+                        boolean onLoan = !book.isAvailable() && book.getReturnDate() != null;
+                        out.writeBoolean(onLoan);
+                        if (onLoan) {
+                            out.writeInt(book.getIssuedToUserId());
+                            out.writeLong(book.getIssueDate().toEpochDay());
+                            out.writeLong(book.getReturnDate().toEpochDay());
+                        }
+                    }
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            checkCount("books", bookCount, written[0]);
+            library.writeTextIndexes(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    @Override
-    public List<Book> searchBooksByTitle(String title) {
-        return books.stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+    // A plain Library changed by another thread mid-snapshot must not produce
+    // a file whose header disagrees with its records
+    private static void checkCount(String what, int declared, int written) throws IOException {
+        if (declared != written) {
+            throw new IOException("Catalog changed while writing the snapshot: " + declared + " "
+                + what + " declared, " + written + " written");
+        }
     }
 
-    @Override
-    public List<Book> searchBooksByAuthor(String author) {
-        return books.stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = LibraryJournal.encode(value);
+        if (bytes == null) {
+            out.writeShort(LibraryJournal.NULL_STRING);
+        } else {
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
     }
 
-    @Override
-    public void displayAllBooks() {
-        System.out.println("\n=== All Books in " + libraryName + " ===");
-        if (books.isEmpty()) {
-            System.out.println("No books available.");
-            return;
+    private static void readSnapshot(Path file, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != SNAPSHOT_MAGIC || version < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized library snapshot: " + file);
+            }
+            // Version 1 snapshots carry no text indexes, so those are rebuilt per book
+            boolean textIndexed = version >= 2;
+            int users = in.readInt();
+            library.reserveUsers(users);
+            for (int i = 0; i < users; i++) {
+                library.restoreUser(new User(in.readInt(), in.readString(), in.readString(), in.readString()));
+            }
+            int books = in.readInt();
+            library.reserveBooks(books);
+            for (int i = 0; i < books; i++) {
+                Book book = new Book(in.readInt(), in.readString(), in.readString(), in.readString());
+                if (textIndexed) {
+                    library.restoreBookWithoutText(book);
+                } else {
+                    library.restoreBook(book);
+                }
+                if (in.readByte() != 0) {
+                    library.restoreLoan(book.getBookId(), in.readInt(),
+                        LocalDate.ofEpochDay(in.readLong()), LocalDate.ofEpochDay(in.readLong()));
+                }
+            }
+            if (textIndexed) {
+                library.restoreTextIndexes(in);
+            }
         }
+    }
 
-        for (Book book : books) {
-            System.out.println(book);
-            if (!book.isAvailable()) {
-                User user = findUserById(book.getIssuedToUserId());
-                System.out.println("  -> Issued to: " + (user != null ? user.getName() : "Unknown"));
-                System.out.println("  -> Return Date: " + book.getReturnDate());
+    // Sequential reader over a memory-mapped file, mapping it one window at a
+    // time so snapshots larger than a single mapping can still be read
+    static final class MappedInput {
+        private static final long WINDOW_SIZE = 1L << 30;
+
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private byte[] scratch = new byte[256];
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+        }
+
+        // Remap at the current position when the window holds fewer than `bytes`
+        private void require(int bytes) throws IOException {
+            if (window.remaining() >= bytes) {
+                return;
+            }
+            long position = windowStart + window.position();
+            if (size - position < bytes) {
+                throw new EOFException("Library snapshot is truncated");
+            }
+            map(position);
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return window.get();
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            return window.getLong();
+        }
+
+        // Bulk copy of into.length bytes; a single read must fit in one window
+        void readFully(byte[] into) throws IOException {
+            require(into.length);
+            window.get(into);
+        }
+
+        String readString() throws IOException {
+            require(2);
+            int length = window.getShort() & 0xFFFF;
+            if (length == LibraryJournal.NULL_STRING) {
+                return null;
+            }
+            require(length);
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
             }
+            window.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
         }
     }
 
-    @Override
-    public void displayAllUsers() {
-        System.out.println("\n=== All Users in " + libraryName + " ===");
-        if (users.isEmpty()) {
-            System.out.println("No users registered.");
-            return;
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
+
+// LibraryBenchmark class - times catalog lookups at increasing catalog sizes
+class LibraryBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int OPS_PER_ROUND = 200_000;
+    private static final int SCAN_OPS_PER_ROUND = 50;
+    private static final int[] CATALOG_SIZES = {1_000, 100_000, 1_000_000};
+    private static final int[] QUERY_LENGTHS = {3, 5, 8, 12};
+    private static final int LOANS_PER_USER = 5_000;
+    private static final String[] SYLLABLES = {"an", "bel", "cor", "dan", "el", "fir", "gal", "hor",
+        "is", "jun", "kel", "lor", "mar", "nor", "or", "pel", "quin", "ros", "sal", "tor"};
+
+    private static volatile long sink;
+    private static PrintStream console;
+
+    // One benchmarked operation; the returned value is consumed
+    interface Operation {
+        long run(int iteration);
+    }
+
+    public static void run() {
+        console = System.out;
+        console.println("Benchmark                                    | Best (ns/op) | Mean (ns/op)");
+
+        // An institutional user holding thousands of loans: return one, borrow it again
+        User institution = new User(1, "Institution", "loans@email.com", "000-000-0000");
+        List<Integer> boxedLoans = new ArrayList<>();
+        for (int id = 1; id <= LOANS_PER_USER; id++) {
+            institution.addIssuedBook(id);
+            boxedLoans.add(id);
         }
+        measure("User.removeIssuedBook + addIssuedBook", OPS_PER_ROUND, i -> {
+            int bookId = 1 + (int) (i * 7919L % LOANS_PER_USER);
+            institution.removeIssuedBook(bookId);
+            institution.addIssuedBook(bookId);
+            return institution.getIssuedBookCount();
+        });
+        measure("List<Integer> remove + add (baseline)", OPS_PER_ROUND / 10, i -> {
+            int bookId = 1 + (int) (i * 7919L % LOANS_PER_USER);
+            boxedLoans.remove(Integer.valueOf(bookId));
+            boxedLoans.add(bookId);
+            return boxedLoans.size();
+        });
+        long[] total = new long[1];
+        IntConsumer summer = bookId -> total[0] += bookId;
+        measure("User.forEachIssuedBook (" + LOANS_PER_USER + " loans)", OPS_PER_ROUND / 100, i -> {
+            institution.forEachIssuedBook(summer);
+            return total[0];
+        });
 
-        for (User user : users) {
-            System.out.println(user);
-            if (!user.getIssuedBooks().isEmpty()) {
-                System.out.println("  -> Issued Books:");
-                for (Integer bookId : user.getIssuedBooks()) {
-                    Book book = findBookById(bookId);
-                    if (book != null) {
-                        System.out.println("    - " + book.getTitle());
-                    }
+        for (int size : CATALOG_SIZES) {
+            Library library = catalog(size);
+            List<Book> books = new ArrayList<>();
+            for (int id = 1; id <= size; id++) {
+                books.add(library.findBookById(id));
+            }
+            int[] ids = new int[OPS_PER_ROUND];
+            String[] isbns = new String[OPS_PER_ROUND];
+            Random random = new Random(size);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = 1 + random.nextInt(size);
+                isbns[i] = isbn(ids[i]);
+            }
+
+            measure("findBookById (" + size + " books)", OPS_PER_ROUND,
+                i -> library.findBookById(ids[i]).getBookId());
+            measure("findBookByIsbn (" + size + " books)", OPS_PER_ROUND,
+                i -> library.findBookByIsbn(isbns[i]).getBookId());
+            measure("stream scan by ID (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> books.stream()
+                        .filter(book -> book.getBookId() == ids[i])
+                        .findFirst()
+                        .orElse(null)
+                        .getBookId());
+
+            // Issue and return print a line each; send it to a discarding stream
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            measure("issueBook + returnBook (" + size + " books)", OPS_PER_ROUND, i -> {
+                library.issueBook(ids[i], 1);
+                return library.returnBook(ids[i], 1) ? 1 : 0;
+            });
+
+            // 1000 open loans, all overdue once the clock moves past their due date
+            for (int id = 1; id <= 1000; id++) {
+                library.issueBook(id, 1);
+            }
+            System.setOut(console);
+            LocalDate later = LocalDate.now().plusDays(30);
+            measure("getOverdueBooks, 1000 loans (" + size + " books)", OPS_PER_ROUND / 1000,
+                i -> library.getOverdueBooks(later).size());
+            measure("overdue stream scan (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> books.stream()
+                        .filter(book -> !book.isAvailable() && book.getReturnDate().isBefore(later))
+                        .count());
+            measure("calculateFines, 1000 loans (" + size + " books)", OPS_PER_ROUND / 1000,
+                i -> library.calculateFines(later).size());
+
+            measure("getAvailableCount (" + size + " books)", OPS_PER_ROUND,
+                i -> library.getAvailableCount());
+            measure("available stream count (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> books.stream().filter(Book::isAvailable).count());
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            measure("displayIssuedBooks (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> {
+                    library.displayIssuedBooks();
+                    return 0;
+                });
+            measure("issued stream filter (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> {
+                    books.stream()
+                            .filter(book -> !book.isAvailable())
+                            .forEach(book -> {
+                                System.out.println(book);
+                                User user = library.findUserById(book.getIssuedToUserId());
+                                System.out.println("  -> Issued to: " + (user != null ? user.getName() : "Unknown"));
+                                System.out.println("  -> Return Date: " + book.getReturnDate());
+                            });
+                    return 0;
+                });
+            System.setOut(console);
+
+            measure("searchBooks, 2 words AND (" + size + " books)", OPS_PER_ROUND / 100,
+                i -> library.searchBooks(word(i) + " " + word(i + 7), true, 50).size());
+            measure("searchBooks, 2 words OR (" + size + " books)", OPS_PER_ROUND / 100,
+                i -> library.searchBooks(word(i) + " " + word(i + 7), false, 50).size());
+            measure("searchBooks, prefix (" + size + " books)", OPS_PER_ROUND / 100,
+                i -> library.searchBooks(SYLLABLES[i % 20] + SYLLABLES[i / 20 % 20] + "*", false, 50).size());
+            measure("title stream scan (" + size + " books)", SCAN_OPS_PER_ROUND,
+                i -> books.stream()
+                        .filter(book -> book.getTitle().toLowerCase().contains(word(i)))
+                        .count());
+            for (int length : QUERY_LENGTHS) {
+                String[] queries = new String[SCAN_OPS_PER_ROUND * 10];
+                for (int i = 0; i < queries.length; i++) {
+                    String title = books.get(ids[i] - 1).getTitle();
+                    int start = random.nextInt(title.length() - length + 1);
+                    queries[i] = title.substring(start, start + length);
                 }
+                measure("searchBooksByTitle, " + length + " chars (" + size + " books)", queries.length,
+                    i -> library.searchBooksByTitle(queries[i]).size());
             }
         }
     }
 
-    // Helper methods (Encapsulation)
-    private Book findBookById(int bookId) {
-        return books.stream()
-                .filter(book -> book.getBookId() == bookId)
-                .findFirst()
-                .orElse(null);
+    // Pseudo-words from an 8000-word vocabulary built out of syllable triples
+    private static String word(int n) {
+        int w = Math.floorMod(n * 0x9E3779B9, 8000);
+        return SYLLABLES[w % 20] + SYLLABLES[w / 20 % 20] + SYLLABLES[w / 400];
     }
 
-    private User findUserById(int userId) {
-        return users.stream()
-                .filter(user -> user.getUserId() == userId)
-                .findFirst()
-                .orElse(null);
+    private static Library catalog(int size) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Library library = new Library("Benchmark Library");
+        for (int id = 1; id <= size; id++) {
+            library.addBook(new Book(id, word(id) + " " + word(id * 31) + " " + word(id * 97),
+                word(id % 1000) + " " + word(id % 1000 + 1), isbn(id)));
+        }
+        library.addUser(new User(1, "Benchmark User", "bench@email.com", "000-000-0000"));
+        System.setOut(console);
+        return library;
     }
 
-    // Additional utility methods
-    public void displayAvailableBooks() {
-        System.out.println("\n=== Available Books ===");
-        books.stream()
-                .filter(Book::isAvailable)
-                .forEach(System.out::println);
+    private static String isbn(int id) {
+        return "978-" + (1_000_000_000L + id);
     }
 
-    public void displayIssuedBooks() {
-        System.out.println("\n=== Issued Books ===");
-        books.stream()
-                .filter(book -> !book.isAvailable())
-                .forEach(book -> {
-                    System.out.println(book);
-                    User user = findUserById(book.getIssuedToUserId());
-                    System.out.println("  -> Issued to: " + (user != null ? user.getName() : "Unknown"));
-                    System.out.println("  -> Return Date: " + book.getReturnDate());
-                });
+    private static void measure(String name, int ops, Operation operation) {
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            long result = 0;
+            for (int i = 0; i < ops; i++) {
+                result += operation.run(i);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = result;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+        }
+        report(name, best / (double) ops, total / (double) MEASURED_ROUNDS / ops);
+    }
+
+    private static void report(String name, double best, double mean) {
+        console.printf("%-44s | %-12.1f | %.1f%n", name, best, mean);
     }
 }
 
 // Main class with demonstration
 public class LibraryManagement {
-    public static void main(String[] args) {
-        // Create library instance
-        Library library = new Library("Central Library");
+    private static final int SEARCH_RESULT_LIMIT = 50;
+    private static final String DEFAULT_DATA_DIRECTORY = "library-data";
+    private static LibraryStore store;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--bench")) {
+            LibraryBenchmark.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--stress")) {
+            runStressTest();
+            return;
+        }
+
+        // Create library instance; the catalog and loans are kept in a data
+        // directory and recovered on startup. The store checkpoints from a
+        // background thread, so the library must be safe to read concurrently.
+        Library library = new ConcurrentLibrary("Central Library");
+        Path dataDirectory = Paths.get(args.length > 1 && args[0].equals("--data") ? args[1] : DEFAULT_DATA_DIRECTORY);
+        store = LibraryStore.open(dataDirectory, library);
+        Runtime.getRuntime().addShutdownHook(new Thread(LibraryManagement::closeStore));
         Scanner scanner = new Scanner(System.in);
 
         // Add sample data
-        initializeSampleData(library);
+        if (library.getBookCount() == 0 && library.getUserCount() == 0) {
+            initializeSampleData(library);
+        }
 
         // Display menu
         while (true) {
@@ -317,42 +2969,158 @@ public class LibraryManagement {
             int choice = scanner.nextInt();
             scanner.nextLine(); // consume newline
 
-            switch (choice) {
-                case 1:
-                    addNewBook(library, scanner);
-                    break;
-                case 2:
-                    addNewUser(library, scanner);
-                    break;
-                case 3:
-                    issueBookToUser(library, scanner);
-                    break;
-                case 4:
-                    returnBookFromUser(library, scanner);
-                    break;
-                case 5:
-                    searchBooks(library, scanner);
-                    break;
-                case 6:
-                    library.displayAllBooks();
-                    break;
-                case 7:
-                    library.displayAllUsers();
-                    break;
-                case 8:
-                    library.displayAvailableBooks();
-                    break;
-                case 9:
-                    library.displayIssuedBooks();
-                    break;
-                case 0:
-                    System.out.println("Thank you for using Library Management System!");
-                    scanner.close();
-                    return;
-                default:
-                    System.out.println("Invalid choice! Please try again.");
+            try {
+                switch (choice) {
+                    case 1:
+                        addNewBook(library, scanner);
+                        break;
+                    case 2:
+                        addNewUser(library, scanner);
+                        break;
+                    case 3:
+                        issueBookToUser(library, scanner);
+                        break;
+                    case 4:
+                        returnBookFromUser(library, scanner);
+                        break;
+                    case 5:
+                        searchBooks(library, scanner);
+                        break;
+                    case 6:
+                        library.displayAllBooks();
+                        break;
+                    case 7:
+                        library.displayAllUsers();
+                        break;
+                    case 8:
+                        library.displayAvailableBooks();
+                        break;
+                    case 9:
+                        library.displayIssuedBooks();
+                        break;
+                    case 10:
+                        library.displayOverdueBooks(LocalDate.now());
+                        break;
+                    case 11:
+                        showBooksDueSoon(library, scanner);
+                        break;
+                    case 0:
+                        System.out.println("Thank you for using Library Management System!");
+                        scanner.close();
+                        return;
+                    default:
+                        System.out.println("Invalid choice! Please try again.");
+                }
+                library.awaitDurable();
+            } catch (UncheckedIOException e) {
+                // Changes can no longer be saved, so stop taking them
+                System.out.println("Library data can no longer be saved: " + e.getCause());
+                scanner.close();
+                return;
+            }
+        }
+    }
+
+    private static void closeStore() {
+        try {
+            store.close();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Failed to save library data: " + e.getMessage());
+        }
+    }
+
+    // Many desks issue and return the same small set of books at once. A shadow
+    // count of holders per book catches any double issue as it happens, and the
+    // final book and user state is cross-checked afterwards.
+    private static void runStressTest() {
+        final int desks = Runtime.getRuntime().availableProcessors() * 2;
+        final int bookCount = 256;
+        final int userCount = 64;
+        final int opsPerDesk = 200_000;
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ConcurrentLibrary library = new ConcurrentLibrary("Stress Library");
+        for (int id = 1; id <= bookCount; id++) {
+            library.addBook(new Book(id, "Stress Book " + id, "Author " + id, "isbn-" + id));
+        }
+        for (int id = 1; id <= userCount; id++) {
+            library.addUser(new User(id, "Desk User " + id, "user" + id + "@email.com", "000-000-0000"));
+        }
+
+        AtomicIntegerArray holders = new AtomicIntegerArray(bookCount + 1);
+        AtomicLong issued = new AtomicLong();
+        AtomicLong doubleIssues = new AtomicLong();
+        AtomicLong failedReturns = new AtomicLong();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(desks);
+        for (int d = 0; d < desks; d++) {
+            final long seed = d;
+            pool.execute(() -> {
+                Random random = new Random(seed);
+                // Loans made at this desk as {bookId, userId}; only this desk returns them
+                List<int[]> loans = new ArrayList<>();
+                for (int i = 0; i < opsPerDesk; i++) {
+                    if (loans.isEmpty() || random.nextBoolean()) {
+                        int bookId = 1 + random.nextInt(bookCount);
+                        int userId = 1 + random.nextInt(userCount);
+                        if (library.issueBook(bookId, userId)) {
+                            issued.incrementAndGet();
+                            if (holders.incrementAndGet(bookId) > 1) {
+                                doubleIssues.incrementAndGet();
+                            }
+                            loans.add(new int[] {bookId, userId});
+                        }
+                    } else {
+                        int[] loan = loans.remove(random.nextInt(loans.size()));
+                        holders.decrementAndGet(loan[0]);
+                        if (!library.returnBook(loan[0], loan[1])) {
+                            failedReturns.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.setOut(console);
+
+        // Every issued book must be held by exactly the user it names, and no user
+        // may hold anything else
+        int inconsistent = 0;
+        int onLoan = 0;
+        for (int id = 1; id <= bookCount; id++) {
+            Book book = library.findBookById(id);
+            if (book.isAvailable() != (holders.get(id) == 0)) {
+                inconsistent++;
+            }
+            if (!book.isAvailable()) {
+                onLoan++;
+                User user = library.findUserById(book.getIssuedToUserId());
+                if (user == null || !user.hasIssuedBook(id)) {
+                    inconsistent++;
+                }
             }
         }
+        int held = 0;
+        for (int id = 1; id <= userCount; id++) {
+            held += library.findUserById(id).getIssuedBookCount();
+        }
+        if (held != onLoan || library.getIssuedCount() != onLoan) {
+            inconsistent++;
+        }
+
+        System.out.printf("Stress test: %d desks x %d ops on %d books in %.1f ms (%.0f ops/s)%n",
+            desks, opsPerDesk, bookCount, elapsed / 1e6, (double) desks * opsPerDesk / (elapsed / 1e9));
+        System.out.printf("Issues: %d, double issues: %d, failed returns: %d, inconsistent books: %d -> %s%n",
+            issued.get(), doubleIssues.get(), failedReturns.get(), inconsistent,
+            doubleIssues.get() == 0 && failedReturns.get() == 0 && inconsistent == 0 ? "CONSISTENT" : "INCONSISTENT");
     }
 
     private static void displayMenu() {
@@ -366,6 +3134,8 @@ public class LibraryManagement {
         System.out.println("7. Display All Users");
         System.out.println("8. Display Available Books");
         System.out.println("9. Display Issued Books");
+        System.out.println("10. Overdue Books & Fines");
+        System.out.println("11. Books Due Soon");
         System.out.println("0. Exit");
         System.out.println("================================");
     }
@@ -390,12 +3160,9 @@ public class LibraryManagement {
         System.out.print("Enter Book ID: ");
         int bookId = scanner.nextInt();
         scanner.nextLine();
-        System.out.print("Enter Title: ");
-        String title = scanner.nextLine();
-        System.out.print("Enter Author: ");
-        String author = scanner.nextLine();
-        System.out.print("Enter ISBN: ");
-        String isbn = scanner.nextLine();
+        String title = readText(scanner, "Enter Title: ");
+        String author = readText(scanner, "Enter Author: ");
+        String isbn = readText(scanner, "Enter ISBN: ");
 
         Book book = new Book(bookId, title, author, isbn);
         library.addBook(book);
@@ -405,17 +3172,26 @@ public class LibraryManagement {
         System.out.print("Enter User ID: ");
         int userId = scanner.nextInt();
         scanner.nextLine();
-        System.out.print("Enter Name: ");
-        String name = scanner.nextLine();
-        System.out.print("Enter Email: ");
-        String email = scanner.nextLine();
-        System.out.print("Enter Phone: ");
-        String phone = scanner.nextLine();
+        String name = readText(scanner, "Enter Name: ");
+        String email = readText(scanner, "Enter Email: ");
+        String phone = readText(scanner, "Enter Phone: ");
 
         User user = new User(userId, name, email, phone);
         library.addUser(user);
     }
 
+    // Ask again until the line is short enough to be saved
+    private static String readText(Scanner scanner, String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String value = scanner.nextLine();
+            if (LibraryJournal.canStore(value)) {
+                return value;
+            }
+            System.out.println("Too long: at most " + LibraryJournal.MAX_STRING_BYTES + " bytes can be saved.");
+        }
+    }
+
     private static void issueBookToUser(Library library, Scanner scanner) {
         System.out.print("Enter Book ID to issue: ");
         int bookId = scanner.nextInt();
@@ -434,8 +3210,14 @@ public class LibraryManagement {
         library.returnBook(bookId, userId);
     }
 
+    private static void showBooksDueSoon(Library library, Scanner scanner) {
+        System.out.print("Enter number of days: ");
+        int days = scanner.nextInt();
+        library.displayBooksDueWithin(LocalDate.now(), days);
+    }
+
     private static void searchBooks(Library library, Scanner scanner) {
-        System.out.println("Search by: 1. Title  2. Author");
+        System.out.println("Search by: 1. Title  2. Author  3. Keywords (all)  4. Keywords (any)");
         System.out.print("Enter choice: ");
         int choice = scanner.nextInt();
         scanner.nextLine();
@@ -449,6 +3231,10 @@ public class LibraryManagement {
             System.out.print("Enter author to search: ");
             String author = scanner.nextLine();
             results = library.searchBooksByAuthor(author);
+        } else if (choice == 3 || choice == 4) {
+            System.out.print("Enter keywords (use word* for prefix): ");
+            String query = scanner.nextLine();
+            results = library.searchBooks(query, choice == 3, SEARCH_RESULT_LIMIT);
         } else {
             System.out.println("Invalid choice!");
             return;